@@ -0,0 +1,392 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe inverted index without one global lock. Words are kept in a
+ * concurrent skip-list map, and the postings of a word are only locked by one
+ * of several lock stripes chosen by the hash of the word, so threads adding
+ * different words rarely wait for each other. File-path ids are kept in the
+ * document table of the inverted index this class extends, only used while
+ * synchronized on it, and word counts are raised without a lock, so adding a
+ * word only locks its own stripe.
+ *
+ * Searches use a snapshot, like the other indexes. A snapshot is rebuilt when
+ * the index was modified after it was made.
+ *
+ * @author Rhea Arora
+ */
+public class ConcurrentInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Number of lock stripes */
+	private static final int STRIPES = 64;
+
+	/** Stores word and postings */
+	private final ConcurrentSkipListMap<String, PostingList> index;
+
+	/** Locks protecting the postings of the words with the same stripe */
+	private final Object[] stripes;
+
+	/** Location of each file-path id, only used while synchronized on it */
+	private final DocumentTable table;
+
+	/** Count of words of each file-path id */
+	private final WordCounts counts;
+
+	/** Number of modifications so far, used to tell if the snapshot is outdated */
+	private final LongAdder modifications;
+
+	/** Snapshot used for searching, with the number of modifications it includes */
+	private volatile Frozen frozen;
+
+	/**
+	 * Constructor initializing the maps and lock stripes.
+	 *
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 */
+	public ConcurrentInvertedIndex(boolean keepPositions) {
+		super(keepPositions);
+		this.index = new ConcurrentSkipListMap<>();
+		this.stripes = new Object[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Object();
+		}
+		this.table = documentTable();
+		this.counts = new WordCounts();
+		this.modifications = new LongAdder();
+		this.frozen = null;
+	}
+
+	/**
+	 * Gets the lock stripe of a word.
+	 *
+	 * @param word the word
+	 * @return lock protecting the postings of the word
+	 */
+	private Object stripe(String word) {
+		int hash = word.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	@Override
+	public int addDocument(String path) {
+		synchronized (table) {
+			int document = table.add(path);
+			counts.ensure(document);
+			return document;
+		}
+	}
+
+	@Override
+	public void add(String word, String path, int position) {
+		add(word, addDocument(path), position);
+	}
+
+	@Override
+	public void add(String word, int document, int position) {
+		synchronized (stripe(word)) {
+			if (!postingsFor(word).add(document, position)) {
+				return;
+			}
+		}
+		counts.raise(document, position);
+		modifications.increment();
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+		addAll(local.freeze());
+	}
+
+	@Override
+	public void addAll(IndexSnapshot snapshot) {
+		int[] documents = new int[snapshot.documentsSize()];
+		synchronized (table) {
+			for (int document = 0; document < documents.length; document++) {
+				documents[document] = table.add(snapshot.getLocation(document));
+				counts.ensure(documents[document]);
+			}
+		}
+		for (int document = 0; document < documents.length; document++) {
+			counts.raise(documents[document], snapshot.getCount(document));
+		}
+		for (int word = 0; word < snapshot.wordsSize(); word++) {
+			String key = snapshot.getWord(word);
+			synchronized (stripe(key)) {
+				snapshot.copyPostings(word, postingsFor(key), documents);
+			}
+		}
+		modifications.increment();
+	}
+
+	/**
+	 * Gets the postings of a word, adding an empty posting list if needed. Must
+	 * be called while holding the lock stripe of the word.
+	 *
+	 * @param word the word
+	 * @return postings of the word
+	 */
+	private PostingList postingsFor(String word) {
+		// empty lists are only removed while holding the same lock stripe
+		return index.computeIfAbsent(word, key -> new PostingList(hasPositions()));
+	}
+
+	@Override
+	public void removeAll(Collection<String> locations) {
+		boolean[] removed;
+		synchronized (table) {
+			removed = new boolean[table.size()];
+			for (String location : locations) {
+				int document = table.getId(location);
+				if (document >= 0) {
+					removed[document] = true;
+					counts.set(document, 0);
+				}
+			}
+		}
+		for (Map.Entry<String, PostingList> entry : index.entrySet()) {
+			synchronized (stripe(entry.getKey())) {
+				entry.getValue().removeAll(removed);
+				if (entry.getValue().size() == 0) {
+					index.remove(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		modifications.increment();
+	}
+
+	/**
+	 * Loads a binary index file by copying it into the index.
+	 */
+	@Override
+	public void load(Path path) throws IOException {
+		IndexSnapshot opened = IndexSnapshot.open(path);
+		if (hasPositions() && !opened.hasPositions()) {
+			throw new IOException("Index file does not store positions: " + path);
+		}
+		addAll(opened);
+	}
+
+	/**
+	 * Makes a snapshot from a copy of the postings of every word, taken while
+	 * holding its lock stripe. The positions share their encoded bytes with the
+	 * index, so only the document ids are copied. Words added while the
+	 * snapshot is made may or may not be included, but the snapshot is then
+	 * rebuilt by the next search.
+	 */
+	@Override
+	public IndexSnapshot freeze() {
+		Frozen current = frozen;
+		long version = modifications.sum();
+		if (current != null && current.version == version) {
+			return current.snapshot;
+		}
+		TreeMap<String, PostingList> copy = new TreeMap<>();
+		for (Map.Entry<String, PostingList> entry : index.entrySet()) {
+			synchronized (stripe(entry.getKey())) {
+				if (entry.getValue().size() > 0) {
+					copy.put(entry.getKey(), entry.getValue().frozenCopy());
+				}
+			}
+		}
+		DocumentTable documents = new DocumentTable();
+		synchronized (table) {
+			for (int document = 0; document < table.size(); document++) {
+				documents.add(table.getLocation(document));
+				documents.setCount(document, counts.get(document));
+			}
+		}
+		IndexSnapshot snapshot = new IndexSnapshot(copy, documents, hasPositions());
+		frozen = new Frozen(snapshot, version);
+		return snapshot;
+	}
+
+	@Override
+	protected IndexSnapshot snapshot() {
+		return freeze();
+	}
+
+	@Override
+	public long getGeneration() {
+		return modifications.sum();
+	}
+
+	/**
+	 * Writes the snapshot of the index, which shares the postings instead of
+	 * copying the index again.
+	 */
+	@Override
+	public void output(Path path) throws IOException {
+		freeze().output(path);
+	}
+
+	@Override
+	public void wordCountOutput(Path path) throws IOException {
+		TreeMap<String, Integer> wordCounts = new TreeMap<>();
+		synchronized (table) {
+			for (int document = 0; document < table.size(); document++) {
+				if (counts.get(document) > 0) {
+					wordCounts.put(table.getLocation(document), counts.get(document));
+				}
+			}
+		}
+		SimpleJsonWriter.asObject(wordCounts, path);
+	}
+
+	@Override
+	public String toString() {
+		return freeze().toString();
+	}
+
+	@Override
+	public boolean containsDocument(String location) {
+		return id(location) >= 0;
+	}
+
+	@Override
+	public boolean containsWords(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return false;
+		}
+		synchronized (stripe(word)) {
+			return postings.size() > 0;
+		}
+	}
+
+	@Override
+	public boolean containsLocations(String word, String location) {
+		return find(word, location) != null;
+	}
+
+	@Override
+	public boolean containsPositions(String word, String location, int position) {
+		return getPositions(word, location).contains(position);
+	}
+
+	@Override
+	public int wordsSize() {
+		return index.size();
+	}
+
+	@Override
+	public int locationsSize(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return 0;
+		}
+		synchronized (stripe(word)) {
+			return postings.size();
+		}
+	}
+
+	@Override
+	public int positionsSize(String word, String location) {
+		PostingList postings = find(word, location);
+		if (postings == null) {
+			return 0;
+		}
+		synchronized (stripe(word)) {
+			int posting = postings.find(id(location));
+			return posting < 0 ? 0 : postings.frequency(posting);
+		}
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> locations = new TreeSet<>();
+		synchronized (stripe(word)) {
+			synchronized (table) {
+				for (int i = 0; i < postings.size(); i++) {
+					locations.add(table.getLocation(postings.document(i)));
+				}
+			}
+		}
+		return Collections.unmodifiableSet(locations);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		PostingList postings = find(word, location);
+		if (postings == null || !hasPositions()) {
+			return Collections.emptySet();
+		}
+		synchronized (stripe(word)) {
+			int posting = postings.find(id(location));
+			if (posting < 0) {
+				return Collections.emptySet();
+			}
+			PositionList positions = new PositionList();
+			positions.addAll(postings.positions(posting));
+			return Collections.unmodifiableSet(positions);
+		}
+	}
+
+	/**
+	 * Gets the postings of a word if they include a file path.
+	 *
+	 * @param word the word
+	 * @param location the file path
+	 * @return postings of the word, or null if the word is not found in the file path
+	 */
+	private PostingList find(String word, String location) {
+		PostingList postings = index.get(word);
+		int document = id(location);
+		if (postings == null || document < 0) {
+			return null;
+		}
+		synchronized (stripe(word)) {
+			return postings.find(document) >= 0 ? postings : null;
+		}
+	}
+
+	/**
+	 * Gets the id of a file path.
+	 *
+	 * @param location the file path
+	 * @return id of the file path, or -1 if it has no id
+	 */
+	private int id(String location) {
+		synchronized (table) {
+			return table.getId(location);
+		}
+	}
+
+	/**
+	 * Snapshot together with the number of modifications it includes.
+	 */
+	private static class Frozen {
+		/** The snapshot */
+		private final IndexSnapshot snapshot;
+
+		/** Number of modifications when the snapshot was started */
+		private final long version;
+
+		/**
+		 * Initializes the pair.
+		 *
+		 * @param snapshot the snapshot
+		 * @param version number of modifications when the snapshot was started
+		 */
+		public Frozen(IndexSnapshot snapshot, long version) {
+			this.snapshot = snapshot;
+			this.version = version;
+		}
+	}
+}
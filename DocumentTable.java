@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns dense integer ids to file-path locations and stores the word count of
+ * each location, so that postings can refer to documents by id instead of by
+ * path. Ids are only converted back to paths when output is written.
+ *
+ * @author Rhea Arora
+ */
+public class DocumentTable {
+
+	/** Initial number of documents reserved for word counts */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Location of each document, indexed by id */
+	private final ArrayList<String> locations;
+
+	/** Id of each location */
+	private final HashMap<String, Integer> ids;
+
+	/** Count of words in each document, indexed by id */
+	private int[] counts;
+
+	/** Initializes an empty document table */
+	public DocumentTable() {
+		this.locations = new ArrayList<>();
+		this.ids = new HashMap<>();
+		this.counts = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Gets the id of a location, assigning the next id if the location is new.
+	 *
+	 * @param location file-path of the document
+	 * @return id of the document
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id != null) {
+			return id;
+		}
+		int next = locations.size();
+		locations.add(location);
+		ids.put(location, next);
+		if (next == counts.length) {
+			int[] grown = new int[counts.length * 2];
+			System.arraycopy(counts, 0, grown, 0, counts.length);
+			counts = grown;
+		}
+		return next;
+	}
+
+	/**
+	 * Gets the id of a location.
+	 *
+	 * @param location file-path of the document
+	 * @return id of the document, or -1 if the location has no id
+	 */
+	public int getId(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the location of a document.
+	 *
+	 * @param id id of the document
+	 * @return file-path of the document
+	 */
+	public String getLocation(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Gets the count of words in a document.
+	 *
+	 * @param id id of the document
+	 * @return count of words
+	 */
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Sets the count of words in a document.
+	 *
+	 * @param id id of the document
+	 * @param count count of words
+	 */
+	public void setCount(int id, int count) {
+		counts[id] = count;
+	}
+
+	/**
+	 * Number of documents with an id.
+	 *
+	 * @return number of documents
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Builds the location to word count map used for output. Documents without
+	 * any words are left out.
+	 *
+	 * @return sorted map of location to word count
+	 */
+	public TreeMap<String, Integer> toMap() {
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			if (counts[id] > 0) {
+				map.put(locations.get(id), counts[id]);
+			}
+		}
+		return map;
+	}
+}
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
@@ -41,6 +42,61 @@ public class Driver {
 		WorkQueue queue = null;
 		// initialize number of worker threads
 		int threads = 0;
+		// only count words instead of storing positions if specified
+		boolean keepPositions = !argumentMap.hasFlag("-nopositions");
+		// maximum number of search results per query, 0 keeps all of them
+		int limit = 0;
+		if (argumentMap.hasFlag("-limit")) {
+			try {
+				// returns number of results specified, else 10 results are given as default value
+				limit = argumentMap.getInteger("-limit", 10);
+			}
+			catch(NumberFormatException e) {
+				log.error("Limit value must be an integer.");
+				limit = 10;
+			}
+		}
+		
+		// largest distance between the words of a query, 0 searches for them anywhere
+		int window = 0;
+		if (argumentMap.hasFlag("-proximity")) {
+			try {
+				// returns distance specified, else 10 words are given as default value
+				window = argumentMap.getInteger("-proximity", 10);
+			}
+			catch(NumberFormatException e) {
+				log.error("Proximity value must be an integer.");
+				window = 10;
+			}
+		}
+		
+		// model used to score exact and partial search results, matches divided by word count by default
+		Scoring scoring = Scoring.MATCHES;
+		if (argumentMap.hasFlag("-scoring")) {
+			try {
+				// returns model specified, else bm25 is given as default value
+				scoring = Scoring.forName(argumentMap.getString("-scoring", "bm25"));
+			}
+			catch(IllegalArgumentException e) {
+				log.error("Scoring model must be matches, tfidf, or bm25.");
+			}
+		}
+		
+		// results of earlier searches, reused while the index does not change; one queries file never repeats a search, so it only gets hits when shared
+		QueryCache cache = null;
+		if (argumentMap.hasFlag("-cache")) {
+			try {
+				// returns number of cached queries specified, else 1000 queries are given as default value
+				cache = new QueryCache(argumentMap.getInteger("-cache", 1000));
+			}
+			catch(NumberFormatException e) {
+				log.error("Cache size must be an integer.");
+				cache = new QueryCache(1000);
+			}
+		}
+		
+		// query lines with AND or NOT are only boolean queries if specified, otherwise those are ordinary words
+		boolean operators = argumentMap.hasFlag("-boolean");
 		
 		if (argumentMap.hasFlag("-threads")) {
 			try {
@@ -57,28 +113,120 @@ public class Driver {
 			}	
 			// pass in number of threads
 			queue = new WorkQueue(threads);
-			// calls thread safe classes & passes in thread safe inverted index
-			ThreadSafeInvertedIndex threadSafe = new ThreadSafeInvertedIndex();
+			// calls thread safe classes & passes in thread safe inverted index, made of segments, shards, partitions, or lock stripes if specified
+			ThreadSafeInvertedIndex threadSafe;
+			if (argumentMap.hasFlag("-segments")) {
+				threadSafe = new SegmentedInvertedIndex(keepPositions, queue);
+			}
+			else if (argumentMap.hasFlag("-shards")) {
+				int shards = threads;
+				try {
+					// returns number of shards specified, else one shard per thread is given as default value
+					shards = argumentMap.getInteger("-shards", threads);
+				}
+				catch(NumberFormatException e) {
+					log.error("Shard value must be an integer.");
+				}
+				threadSafe = new ShardedInvertedIndex(keepPositions, shards > 0 ? shards : threads, queue);
+			}
+			else if (argumentMap.hasFlag("-partitions")) {
+				int partitions = threads;
+				try {
+					// returns number of partitions specified, else one partition per thread is given as default value
+					partitions = argumentMap.getInteger("-partitions", threads);
+				}
+				catch(NumberFormatException e) {
+					log.error("Partition value must be an integer.");
+				}
+				threadSafe = new PartitionedInvertedIndex(keepPositions, partitions > 0 ? partitions : threads, queue);
+			}
+			else if (argumentMap.hasFlag("-concurrent")) {
+				threadSafe = new ConcurrentInvertedIndex(keepPositions);
+			}
+			else {
+				threadSafe = new ThreadSafeInvertedIndex(keepPositions);
+			}
 			invertedIndex = threadSafe;
 			invertedIndexBuilder = new MultiThreadedIndexBuilder(threadSafe, queue);
-			query = new MultiThreadedQueryBuilder(threadSafe, queue);
+			query = new MultiThreadedQueryBuilder(threadSafe, queue, limit, window, cache, operators);
 		}
 		else {
-			invertedIndex = new InvertedIndex();
+			invertedIndex = new InvertedIndex(keepPositions);
 			invertedIndexBuilder = new InvertedIndexBuilder(invertedIndex);
-			query = new QueryBuilder(invertedIndex);
+			query = new QueryBuilder(invertedIndex, limit, window, cache, operators);
 		}	
 		
+		invertedIndex.setScoring(scoring);
+		
+		// previously indexed files, only used when the index they describe was loaded
+		IndexManifest manifest = null;
+		Path manifestPath = argumentMap.getPath("-manifest", Path.of("manifest.txt"));
+		if (argumentMap.hasFlag("-manifest")) {
+			manifest = new IndexManifest();
+		}
+		
+		// whether the index already has files from an index file
+		boolean loaded = false;
+		if (argumentMap.hasFlag("-load")) {
+			Path loadPath = argumentMap.getPath("-load", Path.of("index.bin"));
+			try {
+				invertedIndex.load(loadPath);
+				loaded = true;
+				if (manifest != null && Files.exists(manifestPath)) {
+					try {
+						manifest = IndexManifest.read(manifestPath);
+					} catch (IOException e) {
+						System.out.println("Cannot read manifest with given path: " + manifestPath);
+					}
+				}
+			} catch (IOException e) {
+				System.out.println("Cannot load index with given path: " + loadPath);
+			}
+		}
+		
 		if (argumentMap.hasFlag("-path")) {
 			if (argumentMap.getPath("-path") == null) {
 				return;
 			}
 			Path path = argumentMap.getPath("-path");
 			try {
-				invertedIndexBuilder.checkPath(path);
+				if (manifest != null) {
+					// only parse files that changed since the loaded index was saved
+					invertedIndexBuilder.checkPath(path, manifest);
+				}
+				else if (loaded) {
+					// files of the loaded index are parsed again, so their old postings are removed first
+					invertedIndexBuilder.rebuildPath(path);
+				}
+				else {
+					invertedIndexBuilder.checkPath(path);
+				}
 			} catch (IOException e) {
 				System.out.println("Cannot build index with given path: " + path);
 			}
+			// index is not changed after this point, so compact it for searching
+			invertedIndex.freeze();
+		}
+		
+		if (argumentMap.hasFlag("-save")) {
+			Path savePath = argumentMap.getPath("-save", Path.of("index.bin"));
+			try {
+				// the manifest describes the saved index, so it is only written with it, and never left describing an older index
+				if (manifest != null) {
+					Files.deleteIfExists(manifestPath);
+				}
+				invertedIndex.write(savePath);
+				if (manifest != null) {
+					try {
+						manifest.write(manifestPath);
+					} catch (IOException e) {
+						System.out.println("Cannot write manifest with given path: " + manifestPath);
+					}
+				}
+			}
+			catch (IOException e) {
+				System.out.println("Cannot save index with given path: " + savePath);
+			}
 		}
 		
 		if (argumentMap.hasFlag("-index")) {
@@ -124,6 +272,11 @@ public class Driver {
 			}
 		}
 		
+		if (cache != null) {
+			log.debug("Query cache: {}", cache);
+		}
+		log.debug("Stem cache: {}", StemCache.stats());
+		
 		if(queue != null) {
 			queue.shutdown();
 		}
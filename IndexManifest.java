@@ -0,0 +1,215 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers the size, modification time, and content hash of every file that
+ * was indexed, so that a later run only has to parse the files that were added
+ * or changed since, and remove the files that were changed or deleted.
+ *
+ * @author Rhea Arora
+ */
+public class IndexManifest {
+
+	/** Size of the buffer used to hash files */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Size, modification time, and hash of each indexed file-path location */
+	private final TreeMap<String, Entry> entries;
+
+	/** Entries of the files that were added or changed, recorded once they are indexed */
+	private final HashMap<String, Entry> pending;
+
+	/** Initializes an empty manifest */
+	public IndexManifest() {
+		this.entries = new TreeMap<>();
+		this.pending = new HashMap<>();
+	}
+
+	/**
+	 * Reads a manifest written by {@link #write(Path)}.
+	 *
+	 * @param path the manifest file to read
+	 * @return the manifest
+	 * @throws IOException if path cannot be read or is not a manifest
+	 */
+	public static IndexManifest read(Path path) throws IOException {
+		IndexManifest manifest = new IndexManifest();
+		try (
+				BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+			)
+		{
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				// location is last since it may contain tabs
+				String[] fields = line.split("\t", 4);
+				if (fields.length != 4) {
+					throw new IOException("Not a manifest file: " + path);
+				}
+				try {
+					manifest.entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+				}
+				catch (NumberFormatException e) {
+					throw new IOException("Not a manifest file: " + path);
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest, one tab-separated line of size, modification time,
+	 * hash, and location per file.
+	 *
+	 * @param path the manifest file to write
+	 * @throws IOException if path cannot be written to
+	 */
+	public synchronized void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				Entry file = entry.getValue();
+				writer.write(file.size + "\t" + file.modified + "\t" + file.hash + "\t" + entry.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Compares the files found now against the manifest. Files with the same
+	 * size and modification time as before are assumed unchanged without
+	 * reading them; otherwise the content hash decides. Added and changed files
+	 * are left out of the manifest until {@link #record(Path)} is called after
+	 * they are indexed, so a file that fails to index is parsed again next time.
+	 *
+	 * @param files all text files found now
+	 * @param stale adds the locations whose postings must be removed: changed and deleted files, and added files in case an earlier build left some of their postings
+	 * @return the files that were added or changed and must be parsed
+	 * @throws IOException if a file cannot be read
+	 */
+	public synchronized List<Path> update(Collection<Path> files, Collection<String> stale) throws IOException {
+		ArrayList<Path> changed = new ArrayList<>();
+		HashSet<String> found = new HashSet<>();
+		pending.clear();
+		for (Path file : files) {
+			String location = file.toString();
+			found.add(location);
+			long size = Files.size(file);
+			long modified = Files.getLastModifiedTime(file).toMillis();
+			Entry before = entries.get(location);
+			if (before != null && before.size == size && before.modified == modified) {
+				continue;
+			}
+			String hash = hash(file);
+			if (before != null && before.hash.equals(hash)) {
+				// only touched, the postings are still up to date
+				entries.put(location, new Entry(size, modified, hash));
+				continue;
+			}
+			entries.remove(location);
+			pending.put(location, new Entry(size, modified, hash));
+			stale.add(location);
+			changed.add(file);
+		}
+
+		Iterator<String> iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			String location = iterator.next();
+			if (!found.contains(location)) {
+				stale.add(location);
+				iterator.remove();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Records a file that was added or changed once it was indexed successfully.
+	 *
+	 * @param file a file returned by {@link #update(Collection, Collection)}
+	 */
+	public synchronized void record(Path file) {
+		Entry entry = pending.remove(file.toString());
+		if (entry != null) {
+			entries.put(file.toString(), entry);
+		}
+	}
+
+	/**
+	 * Number of files in the manifest
+	 *
+	 * @return number of files
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Hashes the content of a file with SHA-256.
+	 *
+	 * @param file the file to hash
+	 * @return the hash as hexadecimal digits
+	 * @throws IOException if the file cannot be read
+	 */
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = Files.newInputStream(file)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Size, modification time, and content hash of one file.
+	 */
+	private static class Entry {
+		/** Size of the file in bytes */
+		private final long size;
+
+		/** Modification time of the file in milliseconds */
+		private final long modified;
+
+		/** Hash of the file content */
+		private final String hash;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param size size of the file in bytes
+		 * @param modified modification time of the file in milliseconds
+		 * @param hash hash of the file content
+		 */
+		public Entry(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,1690 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable, read-optimized copy of an inverted index. Words are kept in one
+ * sorted array, and the postings of all words are kept in parallel arrays of
+ * document ids and frequencies, where the postings of a word start at its
+ * offset. Since nothing changes after the snapshot is made, any number of
+ * threads can search it without locking.
+ *
+ * A snapshot can be written to an index file and opened again later. Opening
+ * maps the file into memory and only reads the word and document tables, the
+ * postings are read from the mapping when a search needs them.
+ *
+ * @see InvertedIndex#freeze()
+ * @author Rhea Arora
+ */
+public class IndexSnapshot {
+
+	/** Identifies an index file */
+	private static final int MAGIC = 0x53454958;
+
+	/** Version of the index file format */
+	private static final int VERSION = 1;
+
+	/** Size in bytes of the index file header */
+	private static final int HEADER_SIZE = 6 * Integer.BYTES + 3 * Long.BYTES;
+
+	/** Number of postings in a block that has its own highest score */
+	private static final int BLOCK_SIZE = 64;
+
+	/** Sorted words */
+	private final String[] words;
+
+	/** Index of the first posting of each word, with one extra entry for the end */
+	private final IntBuffer offsets;
+
+	/** Document id of each posting */
+	private final IntBuffer documents;
+
+	/** Number of times the word appears in the document of each posting */
+	private final IntBuffer frequencies;
+
+	/** Positions of each posting of an in-memory snapshot, otherwise null */
+	private final PositionList[] positions;
+
+	/** Index of the first encoded position byte of each posting of an opened snapshot, otherwise null */
+	private final IntBuffer positionOffsets;
+
+	/** Encoded positions of an opened snapshot, otherwise null */
+	private final ByteBuffer encodedPositions;
+
+	/** File-path location of each document id */
+	private final String[] locations;
+
+	/** Count of words of each document id */
+	private final int[] counts;
+
+	/** Statistics of each scoring model, computed when first searched with it */
+	private final AtomicReferenceArray<Weights> weights;
+
+	/**
+	 * Copies the words, postings, and documents of an index into arrays. The
+	 * positions are frozen copies that share their encoded bytes with the
+	 * index, so later adds to the index do not change the snapshot.
+	 *
+	 * @param index sorted map of word to postings
+	 * @param table file-path locations and word counts of the index
+	 * @param keepPositions whether the postings store positions
+	 */
+	public IndexSnapshot(Map<String, PostingList> index, DocumentTable table, boolean keepPositions) {
+		int total = 0;
+		for (PostingList postings : index.values()) {
+			total += postings.size();
+		}
+
+		this.words = new String[index.size()];
+		int[] offsets = new int[index.size() + 1];
+		int[] documents = new int[total];
+		int[] frequencies = new int[total];
+		this.positions = keepPositions ? new PositionList[total] : null;
+
+		int word = 0;
+		int posting = 0;
+		for (var entry : index.entrySet()) {
+			words[word] = entry.getKey();
+			offsets[word] = posting;
+			PostingList postings = entry.getValue();
+			for (int i = 0; i < postings.size(); i++) {
+				documents[posting] = postings.document(i);
+				frequencies[posting] = postings.frequency(i);
+				if (keepPositions) {
+					positions[posting] = postings.positions(i).frozenCopy();
+				}
+				posting++;
+			}
+			word++;
+		}
+		offsets[word] = posting;
+
+		this.offsets = IntBuffer.wrap(offsets);
+		this.documents = IntBuffer.wrap(documents);
+		this.frequencies = IntBuffer.wrap(frequencies);
+		this.positionOffsets = null;
+		this.encodedPositions = null;
+
+		this.locations = new String[table.size()];
+		this.counts = new int[table.size()];
+		for (int id = 0; id < locations.length; id++) {
+			locations[id] = table.getLocation(id);
+			counts[id] = table.getCount(id);
+		}
+		this.weights = new AtomicReferenceArray<>(Scoring.values().length);
+	}
+
+	/**
+	 * Initializes a snapshot from arrays that were already built, either opened
+	 * from an index file or merged from other snapshots.
+	 *
+	 * @param words sorted words
+	 * @param locations file-path location of each document id
+	 * @param counts count of words of each document id
+	 * @param offsets index of the first posting of each word
+	 * @param documents document id of each posting
+	 * @param frequencies frequency of each posting
+	 * @param positions positions of each posting, or null
+	 * @param positionOffsets index of the first position byte of each posting, or null
+	 * @param encodedPositions encoded positions, or null
+	 */
+	private IndexSnapshot(String[] words, String[] locations, int[] counts, IntBuffer offsets, IntBuffer documents,
+			IntBuffer frequencies, PositionList[] positions, IntBuffer positionOffsets, ByteBuffer encodedPositions) {
+		this.words = words;
+		this.locations = locations;
+		this.counts = counts;
+		this.offsets = offsets;
+		this.documents = documents;
+		this.frequencies = frequencies;
+		this.positions = positions;
+		this.positionOffsets = positionOffsets;
+		this.encodedPositions = encodedPositions;
+		this.weights = new AtomicReferenceArray<>(Scoring.values().length);
+	}
+
+	/**
+	 * Merges snapshots that do not share any file-path location into one. The
+	 * documents of each snapshot keep their order and are numbered after the
+	 * documents of the snapshots before it, so the postings of each word are
+	 * still sorted by document id after appending them snapshot by snapshot.
+	 *
+	 * @param parts the snapshots to merge
+	 * @return the merged snapshot
+	 */
+	public static IndexSnapshot merge(List<IndexSnapshot> parts) {
+		int documentsSize = 0;
+		for (IndexSnapshot part : parts) {
+			documentsSize += part.locations.length;
+		}
+
+		String[] locations = new String[documentsSize];
+		int[] counts = new int[documentsSize];
+		int[] bases = new int[parts.size()];
+		int base = 0;
+		for (int part = 0; part < parts.size(); part++) {
+			IndexSnapshot snapshot = parts.get(part);
+			bases[part] = base;
+			System.arraycopy(snapshot.locations, 0, locations, base, snapshot.locations.length);
+			System.arraycopy(snapshot.counts, 0, counts, base, snapshot.counts.length);
+			base += snapshot.locations.length;
+		}
+		return combine(parts, bases, locations, counts);
+	}
+
+	/**
+	 * Combines snapshots of different words that number the same file paths
+	 * the same way, such as the shards of one index, into one. The positions
+	 * are shared with the snapshots instead of being copied.
+	 *
+	 * @param parts the snapshots to combine, none of them sharing a word
+	 * @param table file-path locations and word counts of every snapshot
+	 * @return the combined snapshot
+	 */
+	public static IndexSnapshot union(List<IndexSnapshot> parts, DocumentTable table) {
+		String[] locations = new String[table.size()];
+		int[] counts = new int[table.size()];
+		for (int id = 0; id < locations.length; id++) {
+			locations[id] = table.getLocation(id);
+			counts[id] = table.getCount(id);
+		}
+		return combine(parts, new int[parts.size()], locations, counts);
+	}
+
+	/**
+	 * Helper method, appends the postings of every word of the snapshots in
+	 * sorted order, moving the document ids of each snapshot by its base.
+	 *
+	 * @param parts the snapshots to combine
+	 * @param bases number added to the document ids of each snapshot
+	 * @param locations file-path location of each document id of the result
+	 * @param counts count of words of each document id of the result
+	 * @return the combined snapshot
+	 */
+	private static IndexSnapshot combine(List<IndexSnapshot> parts, int[] bases, String[] locations, int[] counts) {
+		boolean keepPositions = true;
+		int total = 0;
+		for (IndexSnapshot part : parts) {
+			keepPositions &= part.hasPositions();
+			total += part.postingsSize();
+		}
+
+		ArrayList<String> words = new ArrayList<>();
+		ArrayList<Integer> offsets = new ArrayList<>();
+		int[] documents = new int[total];
+		int[] frequencies = new int[total];
+		PositionList[] positions = keepPositions ? new PositionList[total] : null;
+
+		// next word of each snapshot, merged in sorted order
+		int[] next = new int[parts.size()];
+		int posting = 0;
+		while (true) {
+			String word = null;
+			for (int part = 0; part < parts.size(); part++) {
+				IndexSnapshot snapshot = parts.get(part);
+				if (next[part] < snapshot.words.length && (word == null || snapshot.words[next[part]].compareTo(word) < 0)) {
+					word = snapshot.words[next[part]];
+				}
+			}
+			if (word == null) {
+				break;
+			}
+			words.add(word);
+			offsets.add(posting);
+			for (int part = 0; part < parts.size(); part++) {
+				IndexSnapshot snapshot = parts.get(part);
+				if (next[part] < snapshot.words.length && snapshot.words[next[part]].equals(word)) {
+					int index = next[part]++;
+					for (int i = snapshot.offsets.get(index); i < snapshot.offsets.get(index + 1); i++) {
+						documents[posting] = bases[part] + snapshot.documents.get(i);
+						frequencies[posting] = snapshot.frequencies.get(i);
+						if (keepPositions) {
+							positions[posting] = snapshot.positions(i);
+						}
+						posting++;
+					}
+				}
+			}
+		}
+		offsets.add(posting);
+
+		int[] wordOffsets = new int[offsets.size()];
+		for (int i = 0; i < wordOffsets.length; i++) {
+			wordOffsets[i] = offsets.get(i);
+		}
+		return new IndexSnapshot(words.toArray(new String[0]), locations, counts, IntBuffer.wrap(wordOffsets),
+				IntBuffer.wrap(documents), IntBuffer.wrap(frequencies), positions, null, null);
+	}
+
+	/**
+	 * Writes the snapshot to an index file. The file starts with a header of
+	 * counts and section sizes, followed by the word dictionary, the document
+	 * table, the posting offsets, document ids and frequencies, and the encoded
+	 * positions when stored.
+	 *
+	 * The file is written to a temporary file in the same directory first, and
+	 * then moved over the index file. A snapshot loaded from the same index file
+	 * stays mapped to the old file until then, so it is never truncated while
+	 * it is still being read.
+	 *
+	 * @param path the index file to write
+	 * @throws IOException if an IO error occurs
+	 * @see #open(Path)
+	 */
+	public void write(Path path) throws IOException {
+		byte[][] encodedWords = encode(words);
+		byte[][] encodedLocations = encode(locations);
+		int total = documents.limit();
+
+		long wordBytes = 0;
+		for (byte[] word : encodedWords) {
+			wordBytes += Integer.BYTES + word.length;
+		}
+		long locationBytes = 0;
+		for (byte[] location : encodedLocations) {
+			locationBytes += 2 * Integer.BYTES + location.length;
+		}
+		long positionBytes = 0;
+		for (int posting = 0; hasPositions() && posting < total; posting++) {
+			positionBytes += positionsLength(posting);
+		}
+
+		Path absolute = path.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				writeSections(out, encodedWords, encodedLocations, wordBytes, locationBytes, positionBytes);
+			}
+			Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Helper method, writes the header and every section of the index file.
+	 *
+	 * @param out the output of the index file
+	 * @param encodedWords UTF-8 bytes of every word
+	 * @param encodedLocations UTF-8 bytes of every file path
+	 * @param wordBytes size of the word dictionary
+	 * @param locationBytes size of the document table
+	 * @param positionBytes size of the encoded positions
+	 * @throws IOException if an IO error occurs
+	 */
+	private void writeSections(DataOutputStream out, byte[][] encodedWords, byte[][] encodedLocations, long wordBytes,
+			long locationBytes, long positionBytes) throws IOException {
+		int total = documents.limit();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(hasPositions() ? 1 : 0);
+		out.writeInt(words.length);
+		out.writeInt(total);
+		out.writeInt(locations.length);
+		out.writeLong(wordBytes);
+		out.writeLong(locationBytes);
+		out.writeLong(positionBytes);
+
+		for (byte[] word : encodedWords) {
+			out.writeInt(word.length);
+			out.write(word);
+		}
+		for (int id = 0; id < locations.length; id++) {
+			out.writeInt(counts[id]);
+			out.writeInt(encodedLocations[id].length);
+			out.write(encodedLocations[id]);
+		}
+		for (int word = 0; word <= words.length; word++) {
+			out.writeInt(offsets.get(word));
+		}
+		for (int posting = 0; posting < total; posting++) {
+			out.writeInt(documents.get(posting));
+		}
+		for (int posting = 0; posting < total; posting++) {
+			out.writeInt(frequencies.get(posting));
+		}
+		if (hasPositions()) {
+			int offset = 0;
+			for (int posting = 0; posting < total; posting++) {
+				out.writeInt(offset);
+				offset += positionsLength(posting);
+			}
+			out.writeInt(offset);
+			for (int posting = 0; posting < total; posting++) {
+				positions(posting).write(out);
+			}
+		}
+	}
+
+	/**
+	 * Opens an index file written by {@link #write(Path)}. The words and
+	 * documents are read right away, while the postings stay in the
+	 * memory-mapped file and are read when searched.
+	 *
+	 * @param path the index file to open
+	 * @return the snapshot stored in the file
+	 * @throws IOException if the file cannot be read or is not an index file
+	 */
+	public static IndexSnapshot open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not an index file: " + path);
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not an index file: " + path);
+			}
+			boolean keepPositions = header.getInt() == 1;
+			int wordsSize = header.getInt();
+			int total = header.getInt();
+			int documentsSize = header.getInt();
+			long wordBytes = header.getLong();
+			long locationBytes = header.getLong();
+			long positionBytes = header.getLong();
+
+			long start = HEADER_SIZE;
+			ByteBuffer buffer = map(channel, start, wordBytes);
+			String[] words = new String[wordsSize];
+			for (int word = 0; word < wordsSize; word++) {
+				words[word] = decode(buffer);
+			}
+			start += wordBytes;
+
+			buffer = map(channel, start, locationBytes);
+			String[] locations = new String[documentsSize];
+			int[] counts = new int[documentsSize];
+			for (int id = 0; id < documentsSize; id++) {
+				counts[id] = buffer.getInt();
+				locations[id] = decode(buffer);
+			}
+			start += locationBytes;
+
+			IntBuffer offsets = map(channel, start, (wordsSize + 1L) * Integer.BYTES).asIntBuffer();
+			start += (wordsSize + 1L) * Integer.BYTES;
+			IntBuffer documents = map(channel, start, (long) total * Integer.BYTES).asIntBuffer();
+			start += (long) total * Integer.BYTES;
+			IntBuffer frequencies = map(channel, start, (long) total * Integer.BYTES).asIntBuffer();
+			start += (long) total * Integer.BYTES;
+
+			IntBuffer positionOffsets = null;
+			ByteBuffer encodedPositions = null;
+			if (keepPositions) {
+				positionOffsets = map(channel, start, (total + 1L) * Integer.BYTES).asIntBuffer();
+				start += (total + 1L) * Integer.BYTES;
+				encodedPositions = map(channel, start, positionBytes);
+			}
+
+			return new IndexSnapshot(words, locations, counts, offsets, documents, frequencies, null, positionOffsets, encodedPositions);
+		}
+	}
+
+	/**
+	 * Copies the snapshot into the tree map and document table of an index.
+	 *
+	 * @param index map of word to postings to add to
+	 * @param table document table to add to
+	 * @param keepPositions whether the postings of the index store positions
+	 * @throws IllegalArgumentException if the index keeps positions but the snapshot does not
+	 */
+	public void copyTo(Map<String, PostingList> index, DocumentTable table, boolean keepPositions) {
+		if (keepPositions && !hasPositions()) {
+			throw new IllegalArgumentException("Index does not store positions.");
+		}
+		int[] ids = new int[locations.length];
+		for (int id = 0; id < locations.length; id++) {
+			ids[id] = table.add(locations[id]);
+			if (table.getCount(ids[id]) < counts[id]) {
+				table.setCount(ids[id], counts[id]);
+			}
+		}
+		for (int word = 0; word < words.length; word++) {
+			PostingList postings = index.get(words[word]);
+			if (postings == null) {
+				postings = new PostingList(keepPositions);
+				index.put(words[word], postings);
+			}
+			copyPostings(word, postings, ids);
+		}
+	}
+
+	/**
+	 * Copies the postings of one word into a posting list.
+	 *
+	 * @param word index of the word
+	 * @param postings posting list to add to
+	 * @param ids document id in the posting list for each document id of the snapshot, or a negative id to skip the document
+	 * @throws IllegalArgumentException if the posting list keeps positions but the snapshot does not
+	 */
+	public void copyPostings(int word, PostingList postings, int[] ids) {
+		for (int posting = offsets.get(word); posting < offsets.get(word + 1); posting++) {
+			int document = ids[documents.get(posting)];
+			if (document >= 0) {
+				postings.add(document, postings.hasPositions() ? positions(posting) : null, frequencies.get(posting));
+			}
+		}
+	}
+
+	/**
+	 * Match index words to query words
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> exactSearch(Collection<String> stemmedQueries) {
+		return exactSearch(stemmedQueries, 0, Scoring.MATCHES);
+	}
+
+	/**
+	 * Match if word stem starts with query word
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> partialSearch(Collection<String> stemmedQueries) {
+		return partialSearch(stemmedQueries, 0, Scoring.MATCHES);
+	}
+
+	/**
+	 * Match index words to query words, keeping only the best results
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, at least 1
+	 * @return sorted list of the best search results
+	 */
+	public List<InvertedIndex.SearchResult> exactSearch(Collection<String> stemmedQueries, int limit) {
+		return exactSearch(stemmedQueries, limit, Scoring.MATCHES);
+	}
+
+	/**
+	 * Match if word stem starts with query word, keeping only the best results
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, at least 1
+	 * @return sorted list of the best search results
+	 */
+	public List<InvertedIndex.SearchResult> partialSearch(Collection<String> stemmedQueries, int limit) {
+		return partialSearch(stemmedQueries, limit, Scoring.MATCHES);
+	}
+
+	/**
+	 * Match index words to query words, scored by the given model
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @param scoring model used to score the results
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> exactSearch(Collection<String> stemmedQueries, int limit, Scoring scoring) {
+		ArrayList<Integer> matched = new ArrayList<>();
+		for (String query : stemmedQueries) {
+			int word = Arrays.binarySearch(words, query);
+			if (word >= 0) {
+				matched.add(word);
+			}
+		}
+		return search(matched, limit, weights(scoring));
+	}
+
+	/**
+	 * Match if word stem starts with query word, scored by the given model
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @param scoring model used to score the results
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> partialSearch(Collection<String> stemmedQueries, int limit, Scoring scoring) {
+		ArrayList<Integer> matched = new ArrayList<>();
+		for (String query : stemmedQueries) {
+			// words starting with the query are next to each other in sorted order
+			int word = Arrays.binarySearch(words, query);
+			for (word = word < 0 ? -word - 1 : word; word < words.length; word++) {
+				if (!words[word].startsWith(query)) {
+					break;
+				}
+				matched.add(word);
+			}
+		}
+		return search(matched, limit, weights(scoring));
+	}
+
+	/**
+	 * Helper method, scores every document of the matched words, or only finds
+	 * the best ones if there is a limit. Scores of the words of a document are
+	 * always added up in word order, so both give the same scores.
+	 *
+	 * @param matched indexes of the words that match the queries
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @param weights statistics of the scoring model
+	 * @return sorted list of search results
+	 */
+	private List<InvertedIndex.SearchResult> search(ArrayList<Integer> matched, int limit, Weights weights) {
+		Collections.sort(matched);
+		if (limit > 0) {
+			return topResults(matched, limit, weights);
+		}
+		ArrayList<InvertedIndex.SearchResult> resultList = new ArrayList<>();
+		HashMap<Integer, InvertedIndex.SearchResult> lookup = new HashMap<>();
+		for (int word : matched) {
+			calcSearchResults(lookup, resultList, word, weights);
+		}
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * Finds the documents where the words appear next to each other in order.
+	 * Posting lists are intersected starting from the word with the fewest
+	 * postings, galloping ahead in the others, and the positions are only read
+	 * for documents that have every word. Each occurrence of the phrase counts
+	 * as one match. A snapshot without positions never matches a phrase.
+	 *
+	 * @param phrase stemmed words of the phrase, in order
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> phraseSearch(List<String> phrase, int limit) {
+		ArrayList<InvertedIndex.SearchResult> resultList = new ArrayList<>();
+		Cursor[] cursors = hasPositions() ? cursors(phrase) : null;
+		if (cursors == null) {
+			return resultList;
+		}
+		Integer[] order = rarestFirst(cursors);
+		for (int document = align(cursors, order); document >= 0; document = align(cursors, order)) {
+			// positions where the phrase could start, kept if every next word follows
+			int[] starts = shift(cursors[order[0]].positions(), -order[0]);
+			for (int i = 1; i < order.length && starts.length > 0; i++) {
+				starts = follows(starts, cursors[order[i]].positions(), order[i]);
+			}
+			if (starts.length > 0) {
+				InvertedIndex.SearchResult searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+				searchResult.update(starts.length);
+				resultList.add(searchResult);
+			}
+			cursors[order[0]].next();
+		}
+		return limit(resultList, limit);
+	}
+
+	/**
+	 * Finds the documents where every query word appears within a window of
+	 * words, matching the query words exactly.
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param window largest difference between the first and last position of a match
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 * @see #proximitySearch(Collection, int, boolean, int)
+	 */
+	public List<InvertedIndex.SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, int limit) {
+		return proximitySearch(stemmedQueries, window, true, limit);
+	}
+
+	/**
+	 * Finds the documents where every query word appears within a window of
+	 * words. Documents are found by intersecting the posting lists like
+	 * {@link #phraseSearch(List, int)}, then the positions of the words are
+	 * merged in order and a sliding window finds every smallest span of
+	 * positions that has all of the words. Each span counts as one match,
+	 * weighted by the number of words over the length of the span, so words
+	 * that are closer together score higher. With partial search a query word
+	 * is found at the positions of every word starting with it. A snapshot
+	 * without positions never matches.
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param window largest difference between the first and last position of a match
+	 * @param isExact false to match every word starting with a query word
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, boolean isExact, int limit) {
+		if (!isExact) {
+			return partialProximitySearch(stemmedQueries, window, limit);
+		}
+		ArrayList<InvertedIndex.SearchResult> resultList = new ArrayList<>();
+		Cursor[] cursors = hasPositions() ? cursors(new ArrayList<>(stemmedQueries)) : null;
+		if (cursors == null) {
+			return resultList;
+		}
+		Integer[] order = rarestFirst(cursors);
+		int[][] positions = new int[cursors.length][];
+		for (int document = align(cursors, order); document >= 0; document = align(cursors, order)) {
+			for (int i = 0; i < cursors.length; i++) {
+				positions[i] = cursors[i].positions();
+			}
+			InvertedIndex.SearchResult searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+			addWindows(positions, window, searchResult);
+			if (searchResult.getMatches() > 0) {
+				resultList.add(searchResult);
+			}
+			cursors[order[0]].next();
+		}
+		return limit(resultList, limit);
+	}
+
+	/**
+	 * Helper method, finds the documents where a word starting with each query
+	 * word appears within a window of words. Every query word has a cursor for
+	 * each word starting with it, and a document is only looked at once every
+	 * query word has a cursor on it. The positions of the words of one query
+	 * word are merged before the sliding window.
+	 *
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param window largest difference between the first and last position of a match
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	private List<InvertedIndex.SearchResult> partialProximitySearch(Collection<String> stemmedQueries, int window, int limit) {
+		ArrayList<InvertedIndex.SearchResult> resultList = new ArrayList<>();
+		if (!hasPositions() || stemmedQueries.isEmpty()) {
+			return resultList;
+		}
+		Cursor[][] groups = new Cursor[stemmedQueries.size()][];
+		int size = 0;
+		for (String query : stemmedQueries) {
+			// words starting with the query are next to each other in sorted order
+			ArrayList<Cursor> group = new ArrayList<>();
+			int word = Arrays.binarySearch(words, query);
+			for (word = word < 0 ? -word - 1 : word; word < words.length && words[word].startsWith(query); word++) {
+				group.add(new Cursor(word));
+			}
+			if (group.isEmpty()) {
+				return resultList;
+			}
+			groups[size++] = group.toArray(new Cursor[0]);
+		}
+		int[][] positions = new int[groups.length][];
+		int document = 0;
+		while (true) {
+			// first document at or after this one that every query word could have
+			int next = document;
+			for (Cursor[] group : groups) {
+				int first = Integer.MAX_VALUE;
+				for (Cursor cursor : group) {
+					cursor.advance(document);
+					if (!cursor.done()) {
+						first = Math.min(first, cursor.document());
+					}
+				}
+				next = Math.max(next, first);
+			}
+			if (next == Integer.MAX_VALUE) {
+				break;
+			}
+			if (next > document) {
+				document = next;
+				continue;
+			}
+			for (int i = 0; i < groups.length; i++) {
+				positions[i] = positions(groups[i], document);
+			}
+			InvertedIndex.SearchResult searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+			addWindows(positions, window, searchResult);
+			if (searchResult.getMatches() > 0) {
+				resultList.add(searchResult);
+			}
+			document++;
+		}
+		return limit(resultList, limit);
+	}
+
+	/**
+	 * Helper method, merges the positions in a document of every cursor on it.
+	 *
+	 * @param group cursors of the words starting with one query word
+	 * @param document the document id
+	 * @return sorted positions of the words in the document
+	 */
+	private static int[] positions(Cursor[] group, int document) {
+		int[] merged = new int[0];
+		for (Cursor cursor : group) {
+			if (!cursor.done() && cursor.document() == document) {
+				int[] wordPositions = cursor.positions();
+				int size = merged.length;
+				merged = Arrays.copyOf(merged, size + wordPositions.length);
+				System.arraycopy(wordPositions, 0, merged, size, wordPositions.length);
+			}
+		}
+		Arrays.sort(merged);
+		return merged;
+	}
+
+	/**
+	 * Finds the documents that have every required word and none of the
+	 * excluded words. Posting lists of the required words are intersected
+	 * starting from the word with the fewest postings, galloping ahead in the
+	 * others, so the work depends on the rarest word instead of all documents
+	 * of every word. Excluded words are skipped to each found document the same
+	 * way. Matches are the number of times the required words appear, like
+	 * {@link #exactSearch(Collection)}. Without any required word nothing is
+	 * matched, since a document with no matches has no score.
+	 *
+	 * @param required stemmed words that must be found
+	 * @param excluded stemmed words that must not be found
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	public List<InvertedIndex.SearchResult> booleanSearch(Collection<String> required, Collection<String> excluded, int limit) {
+		ArrayList<InvertedIndex.SearchResult> resultList = new ArrayList<>();
+		if (required.isEmpty()) {
+			return resultList;
+		}
+		Cursor[] cursors = cursors(new ArrayList<>(required));
+		if (cursors == null) {
+			return resultList;
+		}
+		ArrayList<Cursor> exclusions = new ArrayList<>();
+		for (String query : excluded) {
+			int word = Arrays.binarySearch(words, query);
+			if (word >= 0) {
+				exclusions.add(new Cursor(word));
+			}
+		}
+		Integer[] order = rarestFirst(cursors);
+		for (int document = align(cursors, order); document >= 0; document = align(cursors, order)) {
+			boolean found = false;
+			for (Cursor exclusion : exclusions) {
+				exclusion.advance(document);
+				found |= !exclusion.done() && exclusion.document() == document;
+			}
+			if (!found) {
+				int matches = 0;
+				for (Cursor cursor : cursors) {
+					matches += cursor.frequency();
+				}
+				InvertedIndex.SearchResult searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+				searchResult.update(matches);
+				resultList.add(searchResult);
+			}
+			cursors[order[0]].next();
+		}
+		return limit(resultList, limit);
+	}
+
+	/**
+	 * Helper method, adds every smallest span of positions that has all of the
+	 * words and fits in the window to a search result.
+	 *
+	 * @param positions sorted positions of each word in the document
+	 * @param window largest difference between the first and last position of a match
+	 * @param searchResult the search result to update
+	 */
+	private static void addWindows(int[][] positions, int window, InvertedIndex.SearchResult searchResult) {
+		int total = 0;
+		for (int[] wordPositions : positions) {
+			total += wordPositions.length;
+		}
+		// positions of all words in order, with the word of each
+		int[] merged = new int[total];
+		int[] words = new int[total];
+		int[] next = new int[positions.length];
+		for (int i = 0; i < total; i++) {
+			int word = -1;
+			for (int candidate = 0; candidate < positions.length; candidate++) {
+				if (next[candidate] < positions[candidate].length
+						&& (word < 0 || positions[candidate][next[candidate]] < positions[word][next[word]])) {
+					word = candidate;
+				}
+			}
+			merged[i] = positions[word][next[word]++];
+			words[i] = word;
+		}
+
+		int[] inWindow = new int[positions.length];
+		int covered = 0;
+		int left = 0;
+		for (int right = 0; right < total; right++) {
+			if (inWindow[words[right]]++ == 0) {
+				covered++;
+			}
+			while (covered == positions.length) {
+				// the span is smallest if the word on the left is not in it again
+				if (inWindow[words[left]] == 1) {
+					int span = merged[right] - merged[left];
+					if (span <= window) {
+						searchResult.update(1, (double) positions.length / (span + 1));
+					}
+					covered--;
+				}
+				inWindow[words[left]]--;
+				left++;
+			}
+		}
+	}
+
+	/**
+	 * Helper method, makes cursors over the postings of words that must all be
+	 * found.
+	 *
+	 * @param required the words
+	 * @return a cursor for each word in the same order, or null if there are no words or a word is not found
+	 */
+	private Cursor[] cursors(List<String> required) {
+		if (required.isEmpty()) {
+			return null;
+		}
+		Cursor[] cursors = new Cursor[required.size()];
+		for (int i = 0; i < cursors.length; i++) {
+			int word = Arrays.binarySearch(words, required.get(i));
+			if (word < 0) {
+				return null;
+			}
+			cursors[i] = new Cursor(word);
+		}
+		return cursors;
+	}
+
+	/**
+	 * Helper method, orders cursors by their number of postings. The rarest
+	 * word decides which documents are looked at.
+	 *
+	 * @param cursors the cursors
+	 * @return indexes of the cursors, rarest word first
+	 */
+	private static Integer[] rarestFirst(Cursor[] cursors) {
+		Integer[] order = new Integer[cursors.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (one, two) -> Integer.compare(cursors[one].size(), cursors[two].size()));
+		return order;
+	}
+
+	/**
+	 * Helper method, moves every cursor to the next document all of them have,
+	 * starting from the current document of the rarest word and galloping ahead
+	 * in the others.
+	 *
+	 * @param cursors the cursors
+	 * @param order indexes of the cursors, rarest word first
+	 * @return the document id, or -1 if there are no more documents
+	 */
+	private static int align(Cursor[] cursors, Integer[] order) {
+		Cursor lead = cursors[order[0]];
+		while (!lead.done()) {
+			int document = lead.document();
+			int next = document;
+			for (int i = 1; i < order.length && next == document; i++) {
+				Cursor cursor = cursors[order[i]];
+				cursor.advance(document);
+				next = cursor.done() ? Integer.MAX_VALUE : cursor.document();
+			}
+			if (next == document) {
+				return document;
+			}
+			if (next == Integer.MAX_VALUE) {
+				break;
+			}
+			lead.advance(next);
+		}
+		return -1;
+	}
+
+	/**
+	 * Helper method, sorts search results, keeping only the best ones if there
+	 * is a limit.
+	 *
+	 * @param resultList the search results
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	private static List<InvertedIndex.SearchResult> limit(ArrayList<InvertedIndex.SearchResult> resultList, int limit) {
+		if (limit > 0) {
+			TopResults top = new TopResults(limit);
+			for (InvertedIndex.SearchResult searchResult : resultList) {
+				top.add(searchResult);
+			}
+			return top.toList();
+		}
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * Helper method, adds the same amount to every position.
+	 *
+	 * @param positions sorted positions
+	 * @param amount amount to add
+	 * @return new array of shifted positions
+	 */
+	private static int[] shift(int[] positions, int amount) {
+		int[] shifted = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			shifted[i] = positions[i] + amount;
+		}
+		return shifted;
+	}
+
+	/**
+	 * Helper method, keeps the phrase starts that have a word at the given
+	 * offset, galloping through the positions of the word.
+	 *
+	 * @param starts sorted positions where the phrase could start
+	 * @param positions sorted positions of the word
+	 * @param offset index of the word in the phrase
+	 * @return the starts that are kept
+	 */
+	private static int[] follows(int[] starts, int[] positions, int offset) {
+		int[] kept = new int[starts.length];
+		int size = 0;
+		int index = 0;
+		for (int start : starts) {
+			index = gallop(positions, index, start + offset);
+			if (index == positions.length) {
+				break;
+			}
+			if (positions[index] == start + offset) {
+				kept[size++] = start;
+			}
+		}
+		return Arrays.copyOf(kept, size);
+	}
+
+	/**
+	 * Helper method, finds the first value that is at least the target,
+	 * galloping ahead from an index and then searching between the last two
+	 * steps.
+	 *
+	 * @param values sorted values
+	 * @param from index to start from
+	 * @param target the value to find
+	 * @return index of the first value at least the target, or the length if there is none
+	 */
+	private static int gallop(int[] values, int from, int target) {
+		if (from >= values.length || values[from] >= target) {
+			return from;
+		}
+		int low = from;
+		int step = 1;
+		while (low + step < values.length && values[low + step] < target) {
+			low += step;
+			step <<= 1;
+		}
+		int high = Math.min(low + step, values.length);
+		low++;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < target) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Helper method, finds the best documents for the given words one document
+	 * at a time (block-max WAND). Cursors over the postings of each word move
+	 * together in document id order. A document is only scored if the highest
+	 * scores of the words that may contain it, first over all postings of the
+	 * words and then over the blocks of postings around it, could reach the
+	 * worst kept result; otherwise the cursors skip past it.
+	 *
+	 * @param matched indexes of the words that match the queries, sorted
+	 * @param limit maximum number of results, at least 1
+	 * @param weights statistics of the scoring model
+	 * @return sorted list of the best search results
+	 */
+	private List<InvertedIndex.SearchResult> topResults(List<Integer> matched, int limit, Weights weights) {
+		ArrayList<Cursor> cursors = new ArrayList<>(matched.size());
+		for (int word : matched) {
+			cursors.add(new Cursor(word, weights));
+		}
+		TopResults top = new TopResults(limit);
+		while (true) {
+			cursors.removeIf(Cursor::done);
+			if (cursors.isEmpty()) {
+				break;
+			}
+			cursors.sort((one, two) -> Integer.compare(one.document(), two.document()));
+			double threshold = top.threshold();
+
+			// first cursor whose document could reach the threshold with the cursors before it
+			double bound = 0;
+			int pivot = -1;
+			for (int i = 0; i < cursors.size(); i++) {
+				bound += cursors.get(i).maxScore();
+				if (reaches(bound, threshold)) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0) {
+				break;
+			}
+			int document = cursors.get(pivot).document();
+			if (cursors.get(0).document() < document) {
+				// documents before the pivot cannot reach the threshold
+				for (int i = 0; i < pivot; i++) {
+					cursors.get(i).advance(document);
+				}
+				continue;
+			}
+
+			int last = pivot;
+			while (last + 1 < cursors.size() && cursors.get(last + 1).document() == document) {
+				last++;
+			}
+			// documents up to the end of the current blocks can only score the block bound
+			double blockBound = 0;
+			int target = last + 1 < cursors.size() ? cursors.get(last + 1).document() : Integer.MAX_VALUE;
+			for (int i = 0; i <= last; i++) {
+				blockBound += cursors.get(i).blockScore();
+				target = Math.min(target, cursors.get(i).blockLast() + 1);
+			}
+			if (!reaches(blockBound, threshold)) {
+				for (int i = 0; i <= last; i++) {
+					cursors.get(i).advance(target);
+				}
+				continue;
+			}
+
+			if (weights.scoring != Scoring.MATCHES) {
+				// same order as scoring every document
+				cursors.subList(0, last + 1).sort((one, two) -> Integer.compare(one.word, two.word));
+			}
+			int matches = 0;
+			double score = 0;
+			for (int i = 0; i <= last; i++) {
+				matches += cursors.get(i).frequency();
+				score += cursors.get(i).score();
+				cursors.get(i).next();
+			}
+			if (weights.scoring == Scoring.MATCHES) {
+				score = (double) matches / counts[document];
+			}
+			if (top.accepts(score)) {
+				InvertedIndex.SearchResult searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+				if (weights.scoring == Scoring.MATCHES) {
+					searchResult.update(matches);
+				}
+				else {
+					searchResult.updateScore(matches, score);
+				}
+				top.add(searchResult);
+			}
+		}
+		return top.toList();
+	}
+
+	/**
+	 * Helper method, checks if a score bound could reach the threshold. Bounds
+	 * are sums of scores that were rounded on their own, so they are allowed a
+	 * small error.
+	 *
+	 * @param bound highest possible score
+	 * @param threshold score needed to be kept
+	 * @return true if the bound could reach the threshold
+	 */
+	private static boolean reaches(double bound, double threshold) {
+		return bound * (1 + 1e-9) >= threshold;
+	}
+
+	/**
+	 * Helper method, gets the statistics of a scoring model, computing them the
+	 * first time the model is used.
+	 *
+	 * @param scoring the scoring model
+	 * @return statistics of the model
+	 */
+	private Weights weights(Scoring scoring) {
+		Weights computed = weights.get(scoring.ordinal());
+		if (computed == null) {
+			computed = new Weights(scoring);
+			if (!weights.compareAndSet(scoring.ordinal(), null, computed)) {
+				computed = weights.get(scoring.ordinal());
+			}
+		}
+		return computed;
+	}
+
+	/**
+	 * Helper method, adds the postings of a word to the search results.
+	 *
+	 * @param lookup Store Search Results by file path id
+	 * @param resultList stores individual search results
+	 * @param word index of the word
+	 * @param weights statistics of the scoring model
+	 */
+	private void calcSearchResults(HashMap<Integer, InvertedIndex.SearchResult> lookup,
+			ArrayList<InvertedIndex.SearchResult> resultList, int word, Weights weights) {
+		for (int posting = offsets.get(word); posting < offsets.get(word + 1); posting++) {
+			int document = documents.get(posting);
+			InvertedIndex.SearchResult searchResult = lookup.get(document);
+			if (searchResult == null) {
+				searchResult = new InvertedIndex.SearchResult(locations[document], counts[document]);
+				lookup.put(document, searchResult);
+				resultList.add(searchResult);
+			}
+			if (weights.scoring == Scoring.MATCHES) {
+				searchResult.update(frequencies.get(posting));
+			}
+			else {
+				searchResult.updateScore(frequencies.get(posting), weights.score(word, posting));
+			}
+		}
+	}
+
+	/**
+	 * Gets the positions of a posting, reading them from the index file if the
+	 * snapshot was opened from one.
+	 *
+	 * @param posting index of the posting
+	 * @return positions of the posting, or null if positions are not stored
+	 */
+	public PositionList positions(int posting) {
+		if (positions != null) {
+			return positions[posting];
+		}
+		if (encodedPositions != null) {
+			int start = positionOffsets.get(posting);
+			return PositionList.decode(encodedPositions, start, positionOffsets.get(posting + 1) - start);
+		}
+		return null;
+	}
+
+	/**
+	 * Number of words stored
+	 *
+	 * @return number of words
+	 */
+	public int wordsSize() {
+		return words.length;
+	}
+
+	/**
+	 * Gets a word
+	 *
+	 * @param word index of the word
+	 * @return the word
+	 */
+	public String getWord(int word) {
+		return words[word];
+	}
+
+	/**
+	 * Number of postings stored
+	 *
+	 * @return number of postings across all words
+	 */
+	public int postingsSize() {
+		return documents.limit();
+	}
+
+	/**
+	 * Number of file-path locations stored
+	 *
+	 * @return number of documents
+	 */
+	public int documentsSize() {
+		return locations.length;
+	}
+
+	/**
+	 * Gets the file-path location of a document
+	 *
+	 * @param document id of the document
+	 * @return file-path location
+	 */
+	public String getLocation(int document) {
+		return locations[document];
+	}
+
+	/**
+	 * Gets the count of words of a document
+	 *
+	 * @param document id of the document
+	 * @return count of words
+	 */
+	public int getCount(int document) {
+		return counts[document];
+	}
+
+	/**
+	 * Checks if the snapshot stores word positions
+	 *
+	 * @return true if positions are stored
+	 */
+	public boolean hasPositions() {
+		return positions != null || encodedPositions != null;
+	}
+
+	/**
+	 * Writes the snapshot as JSON, the same way as
+	 * {@link InvertedIndex#output(Path)}. The postings of one word at a time
+	 * are converted to file paths, so the index is never copied as a whole.
+	 *
+	 * @param path output file
+	 * @throws IOException if path is not found and cannot be output to
+	 */
+	public void output(Path path) throws IOException {
+		SimpleJsonWriter.asInvertedIndex(new AbstractMap<String, Map<String, Set<Integer>>>() {
+			@Override
+			public Set<Entry<String, Map<String, Set<Integer>>>> entrySet() {
+				return new AbstractSet<>() {
+					@Override
+					public Iterator<Entry<String, Map<String, Set<Integer>>>> iterator() {
+						return new Iterator<>() {
+							/** Index of the next word */
+							private int word = 0;
+
+							@Override
+							public boolean hasNext() {
+								return word < words.length;
+							}
+
+							@Override
+							public Entry<String, Map<String, Set<Integer>>> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+								String key = words[word];
+								return Map.entry(key, getPostings(word++));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return words.length;
+					}
+				};
+			}
+		}, path);
+	}
+
+	/**
+	 * Converts the postings of a word to a map sorted by file path.
+	 *
+	 * @param word index of the word
+	 * @return map of file path to positions
+	 */
+	private TreeMap<String, Set<Integer>> getPostings(int word) {
+		TreeMap<String, Set<Integer>> postings = new TreeMap<>();
+		for (int posting = offsets.get(word); posting < offsets.get(word + 1); posting++) {
+			Set<Integer> wordPositions = positions(posting);
+			postings.put(locations[documents.get(posting)], wordPositions == null ? Collections.emptySet() : wordPositions);
+		}
+		return postings;
+	}
+
+	/**
+	 * Writes the word count of every file path with words as JSON, the same
+	 * way as {@link InvertedIndex#wordCountOutput(Path)}.
+	 *
+	 * @param path output file
+	 * @throws IOException if path is not found and cannot be output to
+	 */
+	public void wordCountOutput(Path path) throws IOException {
+		TreeMap<String, Integer> wordCounts = new TreeMap<>();
+		for (int document = 0; document < locations.length; document++) {
+			if (counts[document] > 0) {
+				wordCounts.put(locations[document], counts[document]);
+			}
+		}
+		SimpleJsonWriter.asObject(wordCounts, path);
+	}
+
+	/**
+	 * Writes the snapshot the same way as {@link InvertedIndex#toString()}.
+	 *
+	 * @return snapshot as a string
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		for (int word = 0; word < words.length; word++) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(words[word]).append('=').append(getPostings(word));
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * Number of encoded bytes of the positions of a posting.
+	 *
+	 * @param posting index of the posting
+	 * @return number of encoded bytes
+	 */
+	private int positionsLength(int posting) {
+		if (positions != null) {
+			return positions[posting].encodedLength();
+		}
+		return positionOffsets.get(posting + 1) - positionOffsets.get(posting);
+	}
+
+	/**
+	 * Maps a section of an index file.
+	 *
+	 * @param channel the open index file
+	 * @param start index of the first byte of the section
+	 * @param size number of bytes in the section
+	 * @return read-only buffer of the section
+	 * @throws IOException if the section is too large or cannot be mapped
+	 */
+	private static ByteBuffer map(FileChannel channel, long start, long size) throws IOException {
+		if (size > Integer.MAX_VALUE || start + size > channel.size()) {
+			throw new IOException("Index file section cannot be mapped.");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+	}
+
+	/**
+	 * Encodes strings as UTF-8.
+	 *
+	 * @param strings the strings to encode
+	 * @return encoded bytes of each string
+	 */
+	private static byte[][] encode(String[] strings) {
+		byte[][] encoded = new byte[strings.length][];
+		for (int i = 0; i < strings.length; i++) {
+			encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Reads a length-prefixed UTF-8 string.
+	 *
+	 * @param buffer buffer positioned at the length of the string
+	 * @return the decoded string
+	 */
+	private static String decode(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Statistics of the snapshot used by a scoring model: the weight of each
+	 * word, the norm of each document, and the highest score of each block of
+	 * postings of each word.
+	 */
+	private class Weights {
+		/** The scoring model */
+		private final Scoring scoring;
+
+		/** Weight of each word */
+		private final double[] idf;
+
+		/** Norm of each document id */
+		private final double[] norms;
+
+		/** Highest score of each block of postings of each word, computed when first searched */
+		private final AtomicReferenceArray<double[]> blockScores;
+
+		/**
+		 * Computes the weights of every word and the norms of every document. Only
+		 * documents that still have words are counted.
+		 *
+		 * @param scoring the scoring model
+		 */
+		public Weights(Scoring scoring) {
+			this.scoring = scoring;
+			int documentsSize = 0;
+			long total = 0;
+			for (int count : counts) {
+				if (count > 0) {
+					documentsSize++;
+					total += count;
+				}
+			}
+			double averageLength = documentsSize == 0 ? 1 : (double) total / documentsSize;
+			this.idf = new double[words.length];
+			for (int word = 0; word < idf.length; word++) {
+				idf[word] = scoring.idf(offsets.get(word + 1) - offsets.get(word), documentsSize);
+			}
+			this.norms = new double[counts.length];
+			for (int document = 0; document < norms.length; document++) {
+				norms[document] = scoring.norm(Math.max(1, counts[document]), averageLength);
+			}
+			this.blockScores = new AtomicReferenceArray<>(words.length);
+		}
+
+		/**
+		 * Scores a posting of a word.
+		 *
+		 * @param word index of the word
+		 * @param posting index of the posting
+		 * @return score of the word in the document of the posting
+		 */
+		public double score(int word, int posting) {
+			return scoring.score(frequencies.get(posting), idf[word], norms[documents.get(posting)]);
+		}
+
+		/**
+		 * Gets the highest score of each block of postings of a word, computing
+		 * them the first time.
+		 *
+		 * @param word index of the word
+		 * @return highest score of each block
+		 */
+		public double[] blockScores(int word) {
+			double[] scores = blockScores.get(word);
+			if (scores == null) {
+				int start = offsets.get(word);
+				int end = offsets.get(word + 1);
+				scores = new double[(end - start + BLOCK_SIZE - 1) / BLOCK_SIZE];
+				for (int posting = start; posting < end; posting++) {
+					int block = (posting - start) / BLOCK_SIZE;
+					scores[block] = Math.max(scores[block], score(word, posting));
+				}
+				blockScores.set(word, scores);
+			}
+			return scores;
+		}
+	}
+
+	/**
+	 * Position in the postings of one word, used by the top results, phrase,
+	 * proximity, and boolean searches.
+	 */
+	private class Cursor {
+		/** Index of the first posting of the word */
+		private final int start;
+
+		/** Index after the last posting of the word */
+		private final int end;
+
+		/** Index of the word */
+		private final int word;
+
+		/** Statistics of the scoring model, or null if the postings are not scored */
+		private final Weights weights;
+
+		/** Highest score of each block of postings, or null if not needed yet */
+		private double[] blocks;
+
+		/** Highest score of any posting, or a negative value if not needed yet */
+		private double maxScore;
+
+		/** Index of the current posting */
+		private int posting;
+
+		/**
+		 * Constructor of Cursor Class, starting at the first posting.
+		 *
+		 * @param word index of the word
+		 */
+		public Cursor(int word) {
+			this(word, null);
+		}
+
+		/**
+		 * Constructor of Cursor Class for scored postings, starting at the first posting.
+		 *
+		 * @param word index of the word
+		 * @param weights statistics of the scoring model
+		 */
+		public Cursor(int word, Weights weights) {
+			this.word = word;
+			this.weights = weights;
+			this.start = offsets.get(word);
+			this.end = offsets.get(word + 1);
+			this.blocks = null;
+			this.maxScore = -1;
+			this.posting = start;
+		}
+
+		/**
+		 * Gets the highest score of any posting of the word.
+		 *
+		 * @return highest score
+		 */
+		public double maxScore() {
+			if (maxScore < 0) {
+				maxScore = 0;
+				for (double score : blocks()) {
+					maxScore = Math.max(maxScore, score);
+				}
+			}
+			return maxScore;
+		}
+
+		/**
+		 * Gets the highest score of each block of postings of the word.
+		 *
+		 * @return highest score of each block
+		 */
+		private double[] blocks() {
+			if (blocks == null) {
+				blocks = weights.blockScores(word);
+			}
+			return blocks;
+		}
+
+		/**
+		 * Gets the number of postings of the word.
+		 *
+		 * @return number of postings
+		 */
+		public int size() {
+			return end - start;
+		}
+
+		/**
+		 * Checks if every posting was passed.
+		 *
+		 * @return true if there is no current posting
+		 */
+		public boolean done() {
+			return posting >= end;
+		}
+
+		/**
+		 * Gets the document id of the current posting.
+		 *
+		 * @return document id
+		 */
+		public int document() {
+			return documents.get(posting);
+		}
+
+		/**
+		 * Gets the frequency of the current posting.
+		 *
+		 * @return number of times the word appears in the document
+		 */
+		public int frequency() {
+			return frequencies.get(posting);
+		}
+
+		/**
+		 * Gets the score of the current posting.
+		 *
+		 * @return score of the word in the document
+		 */
+		public double score() {
+			return weights.score(word, posting);
+		}
+
+		/**
+		 * Gets the highest score of the block of the current posting.
+		 *
+		 * @return highest score in the block
+		 */
+		public double blockScore() {
+			return blocks()[(posting - start) / BLOCK_SIZE];
+		}
+
+		/**
+		 * Gets the last document id of the block of the current posting.
+		 *
+		 * @return last document id in the block
+		 */
+		public int blockLast() {
+			int block = (posting - start) / BLOCK_SIZE;
+			return documents.get(Math.min(start + (block + 1) * BLOCK_SIZE, end) - 1);
+		}
+
+		/**
+		 * Gets the positions of the current posting.
+		 *
+		 * @return sorted positions of the word in the document
+		 */
+		public int[] positions() {
+			return IndexSnapshot.this.positions(posting).toIntArray();
+		}
+
+		/** Moves to the next posting */
+		public void next() {
+			posting++;
+		}
+
+		/**
+		 * Moves to the first posting with a document id of at least the target,
+		 * galloping ahead and then searching between the last two steps.
+		 *
+		 * @param target the document id to move to
+		 */
+		public void advance(int target) {
+			if (done() || document() >= target) {
+				return;
+			}
+			int low = posting;
+			int step = 1;
+			while (low + step < end && documents.get(low + step) < target) {
+				low += step;
+				step <<= 1;
+			}
+			int high = Math.min(low + step, end);
+			low++;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (documents.get(middle) < target) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			posting = low;
+		}
+	}
+}
@@ -9,21 +9,103 @@ import java.util.*;
 public class InvertedIndex {
 	
 	/**
-	 * Stores word, file path, and position/location.
+	 * Stores word, document id, and position/location. Positions are kept in a
+	 * compressed {@link PositionList} rather than a set of boxed integers.
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final TreeMap<String, PostingList> index;
 	
 	/**
-	 * Stores file-path and count of words in the path
+	 * Stores file-path id and count of words in the path
 	 */
-	private final TreeMap<String, Integer> wordCount;
+	private final DocumentTable documents;
+	
+	/**
+	 * Whether positions are stored, or only the number of times a word appears in a file path
+	 */
+	private final boolean keepPositions;
+	
+	/**
+	 * Read-optimized copy of the index used for searching, or null if the index
+	 * changed since the last freeze
+	 */
+	private volatile IndexSnapshot snapshot;
+	
+	/**
+	 * Whether the snapshot was loaded from an index file and has not been copied
+	 * into the tree map yet
+	 */
+	private volatile boolean loaded;
+	
+	/**
+	 * Model used to score exact and partial search results
+	 */
+	private volatile Scoring scoring;
+	
+	/**
+	 * Number of times the index was changed after it was frozen, only increased while changing the index
+	 */
+	private volatile long generation;
 	
 	/**
 	 * Initializes index as tree-map
 	 */
 	public InvertedIndex() {
+		this(true);
+	}
+	
+	/**
+	 * Initializes index as tree-map, optionally only counting words instead of
+	 * storing their positions. Searching only needs the counts.
+	 * 
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 */
+	public InvertedIndex(boolean keepPositions) {
 		this.index = new TreeMap<>();
-		this.wordCount = new TreeMap<>();
+		this.documents = new DocumentTable();
+		this.keepPositions = keepPositions;
+		this.snapshot = null;
+		this.loaded = false;
+		this.scoring = Scoring.MATCHES;
+		this.generation = 0;
+	}
+	
+	/**
+	 * Sets the model used to score exact and partial search results. The
+	 * default model divides the matches by the count of words of the file path.
+	 * 
+	 * @param scoring the scoring model
+	 */
+	public void setScoring(Scoring scoring) {
+		this.scoring = scoring;
+	}
+	
+	/**
+	 * Gets the model used to score exact and partial search results.
+	 * 
+	 * @return the scoring model
+	 */
+	public Scoring getScoring() {
+		return scoring;
+	}
+	
+	/**
+	 * Checks if the index stores word positions
+	 * 
+	 * @return true if positions are stored, false if only counts are stored
+	 */
+	public boolean hasPositions() {
+		return keepPositions;
+	}
+	
+	/**
+	 * Gets the id of a file path, assigning a new id if the path is not indexed yet.
+	 * 
+	 * @param path the file path to add
+	 * @return the id of the file path
+	 */
+	public int addDocument(String path) {
+		thaw();
+		return documents.add(path);
 	}
 	
 	/**
@@ -34,10 +116,37 @@ public class InvertedIndex {
 	 * @param position the position of word in file path
 	 */
 	public void add(String word, String path, int position) {
-		index.putIfAbsent(word, new TreeMap<>());
-		index.get(word).putIfAbsent(path, new TreeSet<>());
-		if(index.get(word).get(path).add(position)) {
-			wordCount.put(path, position);
+		addPosting(word, documents.add(path), position);
+	}
+	
+	/**
+	 * Stores a word, file path id, and location into an inverted index data structure.
+	 * 
+	 * @param word the word stored in map
+	 * @param document the id of the file path where word is found
+	 * @param position the position of word in file path
+	 * @see #addDocument(String)
+	 */
+	public void add(String word, int document, int position) {
+		addPosting(word, document, position);
+	}
+	
+	/**
+	 * Helper method, adds the position of a word to the postings of a file path id.
+	 * 
+	 * @param word the word stored in map
+	 * @param document the id of the file path where word is found
+	 * @param position the position of word in file path
+	 */
+	private void addPosting(String word, int document, int position) {
+		thaw();
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			postings = new PostingList(keepPositions);
+			index.put(word, postings);
+		}
+		if (postings.add(document, position)) {
+			documents.setCount(document, position);
 		}
 	}
 	
@@ -47,52 +156,215 @@ public class InvertedIndex {
 	 * @param local inverted index stored from multi-threaded index builder
 	 */
 	public void addAll(InvertedIndex local) {
-		for(String word : local.index.keySet()) {
-			if(!this.index.containsKey(word)) {
-				this.index.put(word, local.index.get(word));
-			}
-			else {
-				for(String path : local.index.get(word).keySet()) {
-					if(!this.index.get(word).containsKey(path)) {
-						this.index.get(word).put(path, local.index.get(word).get(path));	
-					}
-					else {
-						this.index.get(word).get(path).addAll(local.index.get(word).get(path));
-					}
-				}
+		merge(local, 0);
+	}
+	
+	/**
+	 * Merge the index of a later part of the same file into this index,
+	 * moving every position of the part by the number of words before it.
+	 * Only used by {@link MultiThreadedIndexBuilder} on the worker-local
+	 * indexes it builds the parts of a file into, which are plain inverted
+	 * indexes that one thread uses at a time.
+	 * 
+	 * @param part inverted index of a later part of the same file paths
+	 * @param offset number of words before the part
+	 */
+	final void addPart(InvertedIndex part, int offset) {
+		merge(part, offset);
+	}
+	
+	/**
+	 * Helper method, merges the local index to current index, moving every
+	 * position of the local index by an offset.
+	 * 
+	 * @param local inverted index to merge
+	 * @param offset number added to every position and word count of the local index
+	 */
+	private void merge(InvertedIndex local, int offset) {
+		thaw();
+		local.materialize();
+		// file path ids of the local index are translated to ids of this index
+		int[] ids = new int[local.documents.size()];
+		for (int id = 0; id < ids.length; id++) {
+			ids[id] = this.documents.add(local.documents.getLocation(id));
+			int count = local.documents.getCount(id);
+			if (count > 0 && this.documents.getCount(ids[id]) < count + offset) {
+				this.documents.setCount(ids[id], count + offset);
 			}
 		}
 		
-		for(String location : local.wordCount.keySet()) {
-			if(!this.wordCount.containsKey(location)) {
-				this.wordCount.put(location, local.wordCount.get(location));
+		for (var entry : local.index.entrySet()) {
+			PostingList postings = this.index.get(entry.getKey());
+			if (postings == null) {
+				postings = new PostingList(keepPositions);
+				this.index.put(entry.getKey(), postings);
 			}
-			else {
-				if(this.wordCount.get(location) < local.wordCount.get(location)) {
-					this.wordCount.put(location, local.wordCount.get(location));
+			postings.addAll(entry.getValue(), ids, offset);
+		}
+	}
+
+	
+	/**
+	 * Merge a snapshot, for example a segment or a loaded index file, to current index
+	 * 
+	 * @param snapshot snapshot to copy into the index
+	 */
+	public void addAll(IndexSnapshot snapshot) {
+		thaw();
+		snapshot.copyTo(index, documents, keepPositions);
+	}
+	
+	/**
+	 * Removes every word position of the given file paths, for example files
+	 * that were changed or deleted since they were indexed.
+	 * 
+	 * @param locations file paths to remove
+	 */
+	public void removeAll(Collection<String> locations) {
+		thaw();
+		boolean[] removed = new boolean[documents.size()];
+		boolean found = false;
+		for (String location : locations) {
+			int document = documents.getId(location);
+			if (document >= 0) {
+				removed[document] = true;
+				documents.setCount(document, 0);
+				found = true;
+			}
+		}
+		if (!found) {
+			return;
+		}
+		Iterator<PostingList> iterator = index.values().iterator();
+		while (iterator.hasNext()) {
+			PostingList postings = iterator.next();
+			postings.removeAll(removed);
+			if (postings.size() == 0) {
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Compacts the index into an immutable snapshot used by every search until
+	 * the index changes again. Freezing after building avoids walking the tree
+	 * maps (and, for the thread-safe index, locking) on every search.
+	 * 
+	 * @return the snapshot of the index
+	 */
+	public IndexSnapshot freeze() {
+		IndexSnapshot frozen = snapshot;
+		if (frozen == null) {
+			frozen = new IndexSnapshot(index, documents, keepPositions);
+			snapshot = frozen;
+		}
+		return frozen;
+	}
+	
+	/**
+	 * Gets the table of file paths and word counts of the index. Subclasses that
+	 * keep their postings elsewhere still keep their file paths here, and must
+	 * synchronize on the table if several threads use it.
+	 * 
+	 * @return the document table
+	 */
+	protected DocumentTable documentTable() {
+		return documents;
+	}
+	
+	/**
+	 * Gets the current snapshot, freezing the index first if it changed since the last freeze.
+	 * 
+	 * @return the snapshot of the index
+	 */
+	protected IndexSnapshot snapshot() {
+		IndexSnapshot frozen = snapshot;
+		return frozen != null ? frozen : freeze();
+	}
+	
+	/**
+	 * Gets the generation of the index, which is increased every time the index
+	 * is changed. Search results are only up to date while the generation is
+	 * the same as when they were searched.
+	 * 
+	 * @return the generation of the index
+	 * @see QueryCache
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Drops the snapshot before the index is changed. The generation only goes
+	 * up when there is a snapshot to drop, so it changes once per batch of
+	 * changes between two searches instead of on every word added.
+	 */
+	private void thaw() {
+		materialize();
+		if (snapshot != null) {
+			snapshot = null;
+			generation++;
+		}
+	}
+	
+	/**
+	 * Copies a snapshot loaded from an index file into the tree map, the first
+	 * time the tree map is needed. Searching a loaded index does not need it.
+	 */
+	private void materialize() {
+		if (loaded) {
+			synchronized (index) {
+				if (loaded) {
+					snapshot.copyTo(index, documents, keepPositions);
+					loaded = false;
 				}
 			}
 		}
 	}
-
+	
+	/**
+	 * Writes the index to a binary index file that can be loaded again.
+	 * 
+	 * @param path index file to write
+	 * @throws IOException if path cannot be written to
+	 * @see IndexSnapshot#write(Path)
+	 */
+	public void write(Path path) throws IOException {
+		snapshot().write(path);
+	}
+	
+	/**
+	 * Loads a binary index file into the index. If the index is empty, the
+	 * memory-mapped file is searched directly without reading all the postings.
+	 * 
+	 * @param path index file to load
+	 * @throws IOException if path cannot be read or is not an index file
+	 * @see IndexSnapshot#open(Path)
+	 */
+	public void load(Path path) throws IOException {
+		IndexSnapshot opened = IndexSnapshot.open(path);
+		if (keepPositions && !opened.hasPositions()) {
+			throw new IOException("Index file does not store positions: " + path);
+		}
+		thaw();
+		if (index.isEmpty() && documents.size() == 0) {
+			snapshot = opened;
+			loaded = true;
+		}
+		else {
+			opened.copyTo(index, documents, keepPositions);
+		}
+	}
 	
 	/**
 	 * Match index words to query words
 	 * 
 	 * @param stemmedQueries set of stemmed queries from Query class
 	 * @return number of matches of index to query words
+	 * @see #freeze()
 	 */
 	public List<SearchResult> exactSearch(Collection<String> stemmedQueries) {
-		ArrayList<SearchResult> resultList = new ArrayList<>();
-		HashMap<String, SearchResult> lookup = new HashMap<>();
-		for(String query : stemmedQueries) {
-			if(index.containsKey(query)) {
-				calcSearchResults(lookup, resultList, query);
-			}
-		}
-		// sorted list of search results
-		Collections.sort(resultList);
-		return resultList;
+		return snapshot().exactSearch(stemmedQueries, 0, scoring);
 	}
 	
 	/**
@@ -100,40 +372,84 @@ public class InvertedIndex {
 	 * 
 	 * @param stemmedQueries set of stemmed queries from Query class
 	 * @return number of matches of index to query words
+	 * @see #freeze()
 	 */
 	public List<SearchResult> partialSearch(Collection<String> stemmedQueries) {
-		ArrayList<SearchResult> list = new ArrayList<>();
-		HashMap<String, SearchResult> lookup = new HashMap<>();
-		for(String query : stemmedQueries) {
-			for(String word : index.tailMap(query).keySet()) {
-				if(!word.startsWith(query)) {
-					break;
-				}
-				calcSearchResults(lookup, list, word);
-			}
-		}
-		// sorted list of search results
-		Collections.sort(list);
-		return list;
+		return snapshot().partialSearch(stemmedQueries, 0, scoring);
 	}
 	
 	/**
-	 * Helper method, takes out repeated code, to calculate score and create search result
+	 * Match index words to query words, keeping only the best results
 	 * 
-	 * @param lookup Store Search Results by location
-	 * @param resultList stores individual search results
-	 * @param query word
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, at least 1
+	 * @return the best matches of index to query words
+	 * @see TopResults
 	 */
-	private void calcSearchResults(HashMap<String, SearchResult> lookup, ArrayList<SearchResult> resultList, String query) {
-		for (String location : index.get(query).keySet()) {
-			if(!lookup.containsKey(location)) {
-				SearchResult searchResult = new SearchResult(location);
-				lookup.put(location, searchResult);
-				resultList.add(searchResult);
-			}
-			
-			lookup.get(location).update(query);
-		}
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries, int limit) {
+		return snapshot().exactSearch(stemmedQueries, limit, scoring);
+	}
+	
+	/**
+	 * Match if word stem starts with query word, keeping only the best results
+	 * 
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param limit maximum number of results, at least 1
+	 * @return the best matches of index to query words
+	 * @see TopResults
+	 */
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries, int limit) {
+		return snapshot().partialSearch(stemmedQueries, limit, scoring);
+	}
+	
+	/**
+	 * Match documents where the query words appear next to each other in order
+	 * 
+	 * @param phrase stemmed words of the phrase, in order
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of matches, empty if positions are not kept
+	 */
+	public List<SearchResult> phraseSearch(List<String> phrase, int limit) {
+		return snapshot().phraseSearch(phrase, limit);
+	}
+	
+	/**
+	 * Match documents where every query word appears within a window of words,
+	 * scoring words that are closer together higher
+	 * 
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param window largest difference between the first and last position of a match
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of matches, empty if positions are not kept
+	 */
+	public List<SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, int limit) {
+		return proximitySearch(stemmedQueries, window, true, limit);
+	}
+	
+	/**
+	 * Match documents where every query word, or for partial search a word
+	 * starting with it, appears within a window of words
+	 * 
+	 * @param stemmedQueries set of stemmed queries from Query class
+	 * @param window largest difference between the first and last position of a match
+	 * @param isExact false to match every word starting with a query word
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of matches, empty if positions are not kept
+	 */
+	public List<SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, boolean isExact, int limit) {
+		return snapshot().proximitySearch(stemmedQueries, window, isExact, limit);
+	}
+	
+	/**
+	 * Match documents that have every required query word and none of the excluded ones
+	 * 
+	 * @param required stemmed words that must be found
+	 * @param excluded stemmed words that must not be found
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of matches
+	 */
+	public List<SearchResult> booleanSearch(Collection<String> required, Collection<String> excluded, int limit) {
+		return snapshot().booleanSearch(required, excluded, limit);
 	}
 	
 	/**
@@ -153,13 +469,78 @@ public class InvertedIndex {
 	}
 	
 	/**
-	 * Output inverted index
+	 * Convenience method that executes exact or partial search to return the best matches
+	 * 
+	 * @param stemmedQueries stemmed queries
+	 * @param isExact boolean to check if user specifies exact search
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return executes exact or partial search depending on flag specified and returns the best matches
+	 */
+	public List<SearchResult> outputSearchResults(Collection<String> stemmedQueries, boolean isExact, int limit) {
+		if (limit <= 0) {
+			return outputSearchResults(stemmedQueries, isExact);
+		}
+		if (isExact) {
+			return exactSearch(stemmedQueries, limit);
+		}
+		else {
+			return partialSearch(stemmedQueries, limit);
+		}
+	}
+	
+	/**
+	 * Output inverted index. An index without positions is output with empty
+	 * position arrays.
 	 * 
 	 * @param path output file 
 	 * @throws IOException if path not found
 	 */
 	public void output(Path path) throws IOException {
-		SimpleJsonWriter.asInvertedIndex(index, path);
+		materialize();
+		SimpleJsonWriter.asInvertedIndex(new AbstractMap<String, Map<String, Set<Integer>>>() {
+			@Override
+			public Set<Entry<String, Map<String, Set<Integer>>>> entrySet() {
+				return new AbstractSet<>() {
+					@Override
+					public Iterator<Entry<String, Map<String, Set<Integer>>>> iterator() {
+						// file path ids are only converted to paths for one word at a time
+						Iterator<Entry<String, PostingList>> words = index.entrySet().iterator();
+						return new Iterator<>() {
+							@Override
+							public boolean hasNext() {
+								return words.hasNext();
+							}
+
+							@Override
+							public Entry<String, Map<String, Set<Integer>>> next() {
+								Entry<String, PostingList> entry = words.next();
+								return Map.entry(entry.getKey(), getPostings(entry.getValue()));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return index.size();
+					}
+				};
+			}
+		}, path);
+	}
+	
+	/**
+	 * Converts the postings of a word to a map sorted by file path.
+	 * 
+	 * @param postings the postings of a word
+	 * @return map of file path to positions
+	 */
+	private TreeMap<String, Set<Integer>> getPostings(PostingList postings) {
+		TreeMap<String, Set<Integer>> locations = new TreeMap<>();
+		for (int i = 0; i < postings.size(); i++) {
+			Set<Integer> positions = postings.positions(i);
+			locations.put(documents.getLocation(postings.document(i)), positions == null ? Collections.emptySet() : positions);
+		}
+		return locations;
 	}
 	
 	/**
@@ -169,10 +550,22 @@ public class InvertedIndex {
 	 * @throws IOException if path is not found and cannot be output to
 	 */
 	public void wordCountOutput(Path path) throws IOException {
-		SimpleJsonWriter.asObject(wordCount, path);
+		materialize();
+		SimpleJsonWriter.asObject(documents.toMap(), path);
 	}
 
 
+	/**
+	 * Checks if index contains given file location
+	 * 
+	 * @param location file-path of index
+	 * @return if index contains location
+	 */
+	public boolean containsDocument(String location) {
+		materialize();
+		return documents.getId(location) >= 0;
+	}
+
 	/**
 	 * Checks if index contains given word
 	 * 
@@ -180,6 +573,7 @@ public class InvertedIndex {
 	 * @return if index contains word
 	 */
 	public boolean containsWords(String word) {
+		materialize();
 		return index.containsKey(word);
 	}
 
@@ -191,8 +585,10 @@ public class InvertedIndex {
 	 * @return if index contains location
 	 */
 	public boolean containsLocations(String word, String location) {
+		materialize();
 		if (containsWords(word)) {
-			return index.get(word).containsKey(location);
+			int document = documents.getId(location);
+			return document >= 0 && index.get(word).find(document) >= 0;
 		}
 		return false;
 
@@ -207,8 +603,10 @@ public class InvertedIndex {
 	 * @return if index contains position
 	 */
 	public boolean containsPositions(String word, String location, int position) {
-		if (containsLocations(word, location)) {
-			return index.get(word).get(location).contains(position);
+		materialize();
+		if (keepPositions && containsLocations(word, location)) {
+			PostingList postings = index.get(word);
+			return postings.positions(postings.find(documents.getId(location))).contains(position);
 		}
 		return false;
 	}
@@ -233,14 +631,20 @@ public class InvertedIndex {
 	}
 
 	/**
-	 * Number of positions for words
+	 * Number of positions for words, which is also available when positions are not stored
 	 * 
 	 * @param word of index
 	 * @param location file-path of index
 	 * @return size of positions
 	 */
 	public int positionsSize(String word, String location) {
-		return getPositions(word, location).size();
+		materialize();
+		PostingList postings = index.get(word);
+		int document = documents.getId(location);
+		if (postings != null && document >= 0 && postings.find(document) >= 0) {
+			return postings.frequency(postings.find(document));
+		}
+		return 0;
 	}
 
 	/**
@@ -249,6 +653,7 @@ public class InvertedIndex {
 	 * @return keys of tree-map
 	 */
 	public Set<String> getWords() {
+		materialize();
 		return Collections.unmodifiableSet(index.keySet());
 	}
 
@@ -260,8 +665,14 @@ public class InvertedIndex {
 	 *         empty set
 	 */
 	public Set<String> getLocations(String word) {
+		materialize();
 		if (index.containsKey(word)) {
-			return Collections.unmodifiableSet(index.get(word).keySet());
+			PostingList postings = index.get(word);
+			TreeSet<String> locations = new TreeSet<>();
+			for (int i = 0; i < postings.size(); i++) {
+				locations.add(documents.getLocation(postings.document(i)));
+			}
+			return Collections.unmodifiableSet(locations);
 		}
 		return Collections.emptySet();
 	}
@@ -271,13 +682,14 @@ public class InvertedIndex {
 	 * 
 	 * @param word     check if word in index
 	 * @param location check if file-path in index
-	 * @return position of word in location
+	 * @return position of word in location, always empty if positions are not stored
 	 */
 	public Set<Integer> getPositions(String word, String location) {
-		if (index.containsKey(word)) {
-			if (index.get(word).containsKey(location)) {
-				return Collections.unmodifiableSet(index.get(word).get(location));
-			}
+		materialize();
+		PostingList postings = index.get(word);
+		int document = documents.getId(location);
+		if (keepPositions && postings != null && document >= 0 && postings.find(document) >= 0) {
+			return Collections.unmodifiableSet(postings.positions(postings.find(document)));
 		}
 		return Collections.emptySet();
 	}
@@ -289,31 +701,48 @@ public class InvertedIndex {
 	 */
 	@Override
 	public String toString() {
-		return index.toString();
+		materialize();
+		StringBuilder builder = new StringBuilder("{");
+		for (var entry : index.entrySet()) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(entry.getKey()).append('=').append(getPostings(entry.getValue()));
+		}
+		return builder.append('}').toString();
 	}
 	
 	/**
 	 * @author Rhea Arora
 	 * Makes a SearchResult storing the location, number of words, matches to query, and score
 	 */
-	public class SearchResult implements Comparable<SearchResult> { 
+	public static class SearchResult implements Comparable<SearchResult> { 
 		
 		/** File-path location where word is found */
 		private final String location;
 		
+		/** Count of words in the file-path location */
+		private final int wordCount;
+		
 		/** Matches of queries to words in index map */
 		private int matches;
 		
+		/** Sum of the weights of the matches, the same as the matches unless they are weighted */
+		private double weight;
+		
 		/** Score calculated by matches divided by word count */
 		private double score;
 
 		/** Initializes SearchResults Class
 		 * 
 		 * @param location file-path location initialization
+		 * @param wordCount count of words in the file-path location
 		 */
-		public SearchResult(String location) {
+		public SearchResult(String location, int wordCount) {
 			this.location = location;
+			this.wordCount = wordCount;
 			this.matches = 0;
+			this.weight = 0;
 			this.score = 0;
 		}
 
@@ -357,11 +786,37 @@ public class InvertedIndex {
 		/**
 		 * Update the matches and score if duplicates found in file path
 		 * 
-		 * @param query word from index
+		 * @param count number of times a query word appears in the file path
+		 */
+		public void update(int count) {
+			update(count, count);
+		}
+		
+		/**
+		 * Update the matches and score with weighted matches, for example matches
+		 * of words that are close together
+		 * 
+		 * @param count number of matches
+		 * @param weight sum of the weights of the matches
+		 */
+		public void update(int count, double weight) {
+			this.matches += count; 
+			this.weight += weight;
+			this.score = this.weight / wordCount;
+		}
+		
+		/**
+		 * Update the matches and score with a score computed by a scoring model,
+		 * which is already normalized and not divided by the word count
+		 * 
+		 * @param count number of times a query word appears in the file path
+		 * @param score score of the query word in the file path
+		 * @see Scoring
 		 */
-		private void update(String query) {
-			this.matches += index.get(query).get(location).size(); 
-			this.score = (double) matches / wordCount.get(location);
+		public void updateScore(int count, double score) {
+			this.matches += count;
+			this.weight += score;
+			this.score = this.weight;
 		}
 		
 		@Override
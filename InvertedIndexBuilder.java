@@ -1,11 +1,19 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Builds in-memory inverted index.
@@ -13,8 +21,11 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  */
 public class InvertedIndexBuilder {
 
-	/** The default stemmer algorithm. */
-	private static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
+	/** Files at least this large are mapped into memory instead of read line by line */
+	private static final long MAP_THRESHOLD = 1 << 16;
+
+	/** Largest part of a file mapped at once */
+	private static final long MAP_SIZE = 1 << 30;
 
 	/** Initialize inverted index class to implement in-memory index */
 	private final InvertedIndex invertedIndex;
@@ -37,8 +48,15 @@ public class InvertedIndexBuilder {
 	public void checkPath(Path value) throws IOException {
 		// if a directory, stems words in each file in directory and builds inverted index
 		if (Files.isDirectory(value)) {
-			for (Path file : TextFileFinder.list(value)) {
-				buildIndex(file); 
+			// each file is built as soon as it is found, instead of after the whole directory is listed
+			try (Stream<Path> files = TextFileFinder.find(value)) {
+				Iterator<Path> iterator = files.iterator();
+				while (iterator.hasNext()) {
+					buildIndex(iterator.next());
+				}
+			}
+			catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
 		}
 		// if a file, stems words in the file and builds the inverted index
@@ -47,6 +65,63 @@ public class InvertedIndexBuilder {
 		}
 	}
 
+	/**
+	 * Updates the index with only the files that were added, changed, or deleted
+	 * since the manifest was written. Postings of changed and deleted files are
+	 * removed before the added and changed files are parsed again.
+	 * 
+	 * @param value -path flag value taken as input and checks if file or directory to traverse through
+	 * @param manifest files indexed before, updated with the files found now
+	 * @throws IOException if path not found
+	 */
+	public void checkPath(Path value, IndexManifest manifest) throws IOException {
+		List<Path> files = Files.isDirectory(value) ? TextFileFinder.list(value) : List.of(value);
+		ArrayList<String> stale = new ArrayList<>();
+		List<Path> changed = manifest.update(files, stale);
+		invertedIndex.removeAll(stale);
+		for (Path file : changed) {
+			buildIndex(file, manifest);
+		}
+	}
+
+	/**
+	 * Builds the index from the files of a path that may already be in the
+	 * index, for example after an index file was loaded. The old postings of
+	 * every file are removed first, so no word is counted twice.
+	 * 
+	 * @param value -path flag value taken as input and checks if file or directory to traverse through
+	 * @throws IOException if path not found
+	 */
+	public void rebuildPath(Path value) throws IOException {
+		List<Path> files = Files.isDirectory(value) ? TextFileFinder.list(value) : List.of(value);
+		ArrayList<String> stale = new ArrayList<>(files.size());
+		for (Path file : files) {
+			stale.add(file.toString());
+		}
+		invertedIndex.removeAll(stale);
+		checkPath(value);
+	}
+
+	/**
+	 * Builds a file that was added or changed, and records it in the manifest
+	 * only if it was built successfully. The postings of a file that fails are
+	 * removed, so it is parsed again from the start next time.
+	 * 
+	 * @param path to build index from
+	 * @param manifest files indexed before, recording the file once it is built
+	 * @throws IOException if path not found or cannot be read
+	 */
+	public void buildIndex(Path path, IndexManifest manifest) throws IOException {
+		try {
+			buildIndex(path);
+		}
+		catch (IOException e) {
+			invertedIndex.removeAll(List.of(path.toString()));
+			throw e;
+		}
+		manifest.record(path);
+	}
+
 	/**
 	 * Instance type method.
 	 * 
@@ -59,16 +134,23 @@ public class InvertedIndexBuilder {
 	
 	
 	/**
-	 * Reads file, parses each line, and adds components (word, path, position) in index
+	 * Reads file, parses each line, and adds components (word, path, position) in index.
+	 * Words are split by the tokenizer and stemmed by the stemmer and cache of the current thread.
+	 * Large files are mapped into memory and split straight from their bytes.
 	 * 
 	 * @param path file-path to stem and add to inverted index
 	 * @param invertedIndex add to index
 	 * @throws IOException if path not found or cannot be read
 	 */
 	public static void buildIndex(Path path, InvertedIndex invertedIndex) throws IOException { 
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
-		String file = path.toString();
-		int position = 1;
+		int document = invertedIndex.addDocument(path.toString());
+		Words words = new Words(invertedIndex, document);
+		long size = Files.size(path);
+		if (size >= MAP_THRESHOLD) {
+			mapIndex(path, 0, size, words);
+			return;
+		}
+		TextTokenizer tokenizer = TextTokenizer.get();
 		String line = null;
 
 		try (
@@ -76,12 +158,171 @@ public class InvertedIndexBuilder {
 			) 
 		{
 			while ((line = reader.readLine()) != null) {
-				for(String word : TextParser.parse(line)) {
-					word = stemmer.stem(word).toString();
-					invertedIndex.add(word, file, position);
-					position++;
+				tokenizer.tokenize(line, words);
+			}
+		}
+	}
+
+	/**
+	 * Reads part of a file, and adds its words to the index at positions
+	 * starting from 1, as if the part was the whole file. The part must start
+	 * at the start of the file or right after a line break, and end at the end
+	 * of the file or right after a line break.
+	 * 
+	 * @param path file-path to stem and add to inverted index
+	 * @param start index of the first byte of the part
+	 * @param end index after the last byte of the part
+	 * @param invertedIndex add to index
+	 * @return number of words in the part
+	 * @throws IOException if path not found or cannot be read
+	 * @see #splitLines(Path, int)
+	 */
+	public static int buildIndex(Path path, long start, long end, InvertedIndex invertedIndex) throws IOException {
+		int document = invertedIndex.addDocument(path.toString());
+		Words words = new Words(invertedIndex, document);
+		mapIndex(path, start, end, words);
+		return words.position - 1;
+	}
+
+	/**
+	 * Splits a file into parts of about the same size that start and end at
+	 * line breaks, so every part can be read on its own.
+	 * 
+	 * @param path the file to split
+	 * @param parts the number of parts wanted
+	 * @return index of the first byte of every part, followed by the size of the file
+	 * @throws IOException if path not found or cannot be read
+	 * @see #buildIndex(Path, long, long, InvertedIndex)
+	 */
+	public static long[] splitLines(Path path, int parts) throws IOException {
+		long[] starts = new long[parts + 1];
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			starts[parts] = size;
+			for (int part = 1; part < parts; part++) {
+				// the next part starts after the first line break at or after an even split
+				long offset = Math.max(starts[part - 1], size / parts * part);
+				long start = size;
+				while (start == size && offset < size) {
+					buffer.clear();
+					int read = channel.read(buffer, offset);
+					if (read < 0) {
+						break;
+					}
+					for (int i = 0; i < read; i++) {
+						byte b = buffer.get(i);
+						if (b == '\n' || b == '\r') {
+							start = offset + i + 1;
+							break;
+						}
+					}
+					offset += read;
 				}
+				starts[part] = start;
+			}
+		}
+		return starts;
+	}
+
+	/**
+	 * Helper method, maps part of the file into memory and splits it into lines
+	 * at the same line breaks as {@link BufferedReader#readLine()}. Lines that
+	 * are all ASCII are split straight from the mapped bytes, so only the stems
+	 * are strings. Other lines are decoded from UTF-8 first.
+	 * 
+	 * @param path file-path to stem and add to inverted index
+	 * @param start index of the first byte to read
+	 * @param end index after the last byte to read
+	 * @param words adds the words to the index
+	 * @throws IOException if path cannot be read or is not UTF-8
+	 */
+	private static void mapIndex(Path path, long start, long end, Words words) throws IOException {
+		TextTokenizer tokenizer = TextTokenizer.get();
+		// reports malformed input like the buffered reader does
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long offset = start;
+			while (offset < end) {
+				int length = (int) Math.min(end - offset, MAP_SIZE);
+				MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+				// a line continuing past this part is left for the next part
+				int limit = offset + length < end ? lastLineBreak(bytes, length) + 1 : length;
+				if (limit == 0) {
+					throw new IOException("Line too long to map: " + path);
+				}
+				int from = 0;
+				while (from < limit) {
+					int to = from;
+					while (to < limit && bytes.get(to) != '\n' && bytes.get(to) != '\r') {
+						to++;
+					}
+					// a \r\n line break only gives an extra empty line, which has no words
+					if (!tokenizer.tokenize(bytes, from, to, words)) {
+						tokenizer.tokenize(decoder.decode(bytes.slice(from, to - from)).toString(), words);
+					}
+					from = to + 1;
+				}
+				offset += limit;
+			}
+		}
+	}
+
+	/**
+	 * Helper method, finds the last line break in the bytes.
+	 * 
+	 * @param bytes the bytes to search
+	 * @param length number of bytes
+	 * @return index of the last \n or \r, or -1 if there is none
+	 */
+	private static int lastLineBreak(MappedByteBuffer bytes, int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			byte b = bytes.get(i);
+			if (b == '\n' || b == '\r') {
+				return i;
 			}
 		}
+		return -1;
+	}
+
+	/**
+	 * Stems the words of one file and adds them to the index at the next positions.
+	 */
+	private static class Words implements Consumer<String>, TextTokenizer.WordConsumer {
+		/** The index words are added to */
+		private final InvertedIndex invertedIndex;
+
+		/** Stemmer and cache of the current thread */
+		private final StemCache stemmer;
+
+		/** Document number of the file */
+		private final int document;
+
+		/** Position of the next word */
+		private int position;
+
+		/**
+		 * Initializes the words of a file, starting at position 1.
+		 * 
+		 * @param invertedIndex the index words are added to
+		 * @param document document number of the file
+		 */
+		public Words(InvertedIndex invertedIndex, int document) {
+			this.invertedIndex = invertedIndex;
+			this.stemmer = StemCache.get();
+			this.document = document;
+			this.position = 1;
+		}
+
+		@Override
+		public void accept(String word) {
+			invertedIndex.add(stemmer.stem(word), document, position++);
+		}
+
+		@Override
+		public void accept(char[] letters, int length) {
+			invertedIndex.add(stemmer.stem(letters, length), document, position++);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,12 +13,21 @@ import org.apache.logging.log4j.Logger;
  * Multi-Threaded version of building index.
  */
 public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
+	/** Smallest part of a large file built by its own task */
+	private static final long PART_SIZE = 1 << 24;
+	
 	/** Initialize inverted index class to implement in-memory index */
 	private final ThreadSafeInvertedIndex index; 
 	
 	/** Work queue object to save work's state */
 	private final WorkQueue queue;
 	
+	/** Worker-local indexes not used by any task right now, merged into the index once all files are built */
+	private final ArrayList<InvertedIndex> locals;
+	
+	/** Files that may be waiting or being built at once, so finding files never gets far ahead of building them */
+	private final Semaphore backlog;
+	
 	/** The logger to use */
 	private static Logger log = LogManager.getLogger("MultiThreadedIndexBuilder");
 	
@@ -28,17 +41,91 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 		super(index);
 		this.index = index;
 		this.queue = queue;
+		this.locals = new ArrayList<>();
+		this.backlog = new Semaphore(queue.size() * 4);
 	}
 
+	/**
+	 * Files are built while the directory is still being searched. If searching
+	 * fails, the files found before are still built and merged.
+	 */
 	@Override
 	public void checkPath(Path value) throws IOException {
-		super.checkPath(value);
+		try {
+			super.checkPath(value);
+		}
+		finally {
+			finish();
+		}
+	}
+	
+	@Override
+	public void checkPath(Path value, IndexManifest manifest) throws IOException {
+		try {
+			super.checkPath(value, manifest);
+		}
+		finally {
+			finish();
+		}
+	}
+	
+	/**
+	 * Waits for every file to be built, then merges the worker-local indexes
+	 * pairwise in parallel until one is left, and adds that one to the shared
+	 * index in a single step. An index that adds local indexes separately gets
+	 * every worker-local index on its own, added in parallel.
+	 *
+	 * @see ThreadSafeInvertedIndex#addsLocalsSeparately()
+	 */
+	public void finish() {
 		queue.finish();
+		List<InvertedIndex> parts;
+		synchronized (locals) {
+			parts = new ArrayList<>(locals);
+			locals.clear();
+		}
+		if (index.addsLocalsSeparately()) {
+			for (InvertedIndex local : parts) {
+				queue.execute(new MergeTask(index, local));
+			}
+			queue.finish();
+			return;
+		}
+		while (parts.size() > 1) {
+			ArrayList<InvertedIndex> merged = new ArrayList<>();
+			for (int i = 0; i + 1 < parts.size(); i += 2) {
+				queue.execute(new MergeTask(parts.get(i), parts.get(i + 1)));
+				merged.add(parts.get(i));
+			}
+			if (parts.size() % 2 == 1) {
+				merged.add(parts.get(parts.size() - 1));
+			}
+			queue.finish();
+			parts = merged;
+		}
+		if (!parts.isEmpty()) {
+			index.addAll(parts.get(0));
+		}
 	}
 	
+	/**
+	 * Adds a task to build the file, first waiting while too many files are
+	 * waiting or being built.
+	 */
 	@Override
 	public void buildIndex(Path path) throws IOException {
-		 queue.execute(new Task(path));
+		backlog.acquireUninterruptibly();
+		queue.execute(new Task(path, null));
+	}
+	
+	/**
+	 * Adds a task to build the file, which records the file in the manifest
+	 * once it is built.
+	 */
+	@Override
+	public void buildIndex(Path path, IndexManifest manifest) throws IOException {
+		backlog.acquireUninterruptibly();
+		queue.execute(new Task(path, manifest));
 	}
 	
 	/**
@@ -48,26 +135,133 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 	private class Task implements Runnable {
 		/** Path object */
 		private Path path;
+		
+		/** Manifest the file is recorded in once it is built, or null */
+		private IndexManifest manifest;
 
 		/**
 		 * Constructor of Task Class.
 		 * 
 		 * @param path file to build index from 
+		 * @param manifest manifest the file is recorded in once it is built, or null
 		 */
-		public Task(Path path) {
+		public Task(Path path, IndexManifest manifest) {
 			this.path = path;
+			this.manifest = manifest;
 		}
 		
 		@Override
 		public void run() {
+			// To prevent constant blocking and inefficiency, files are added to a worker-local index that no other task uses at the same time, which is merged into the shared index at the end.
+			InvertedIndex local;
+			synchronized (locals) {
+				local = locals.isEmpty() ? new InvertedIndex(index.hasPositions()) : locals.remove(locals.size() - 1);
+			}
 			try {
-				// To prevent constant blocking and inefficiency, using local data of the index, then merging the shared data to the index is necessary.
-				InvertedIndex local = new InvertedIndex();
-				InvertedIndexBuilder.buildIndex(path, local);
-				index.addAll(local);
+				int parts = (int) Math.min(Files.size(path) / PART_SIZE, queue.size());
+				if (parts > 1) {
+					buildParts(path, parts, local);
+				}
+				else {
+					InvertedIndexBuilder.buildIndex(path, local);
+				}
+				if (manifest != null) {
+					manifest.record(path);
+				}
 			} catch (IOException e) {
 				log.error("Could not build index" + path);
-			}		
+				// drop what was read before the error, like a failed file used to be
+				local.removeAll(List.of(path.toString()));
+			}
+			finally {
+				synchronized (locals) {
+					locals.add(local);
+				}
+				backlog.release();
+			}
+		}
+	}
+	
+	/**
+	 * Builds a large file in parts split at line breaks, so the parts of one
+	 * file are read, stemmed, and added at the same time. Every part is built
+	 * from position 1 into its own index, and the indexes are merged pairwise in
+	 * parallel, moving the positions of the later part by the number of words
+	 * before it. The positions and word count are the same as building the file
+	 * in one piece.
+	 * 
+	 * @param path the file to build
+	 * @param parts number of parts to split the file into
+	 * @param local worker-local index the first part is built into, and the others are merged into
+	 * @throws IOException if any part cannot be read
+	 */
+	private void buildParts(Path path, int parts, InvertedIndex local) throws IOException {
+		long[] starts = InvertedIndexBuilder.splitLines(path, parts);
+		InvertedIndex[] indexes = new InvertedIndex[parts];
+		int[] counts = new int[parts];
+		IOException[] errors = new IOException[parts];
+		indexes[0] = local;
+		ArrayList<Runnable> tasks = new ArrayList<>(parts);
+		for (int i = 0; i < parts; i++) {
+			int part = i;
+			if (part > 0) {
+				indexes[part] = new InvertedIndex(index.hasPositions());
+			}
+			tasks.add(() -> {
+				try {
+					counts[part] = InvertedIndexBuilder.buildIndex(path, starts[part], starts[part + 1], indexes[part]);
+				}
+				catch (IOException e) {
+					errors[part] = e;
+				}
+			});
+		}
+		queue.invokeAll(tasks);
+		for (IOException error : errors) {
+			if (error != null) {
+				throw error;
+			}
+		}
+		// counts[i] is the number of words of the parts merged into indexes[i] so far
+		for (int width = 1; width < parts; width *= 2) {
+			tasks.clear();
+			for (int i = 0; i + width < parts; i += 2 * width) {
+				int left = i;
+				int right = i + width;
+				tasks.add(() -> {
+					indexes[left].addPart(indexes[right], counts[left]);
+					counts[left] += counts[right];
+				});
+			}
+			queue.invokeAll(tasks);
+		}
+	}
+	
+	/**
+	 * @author Rhea Arora
+	 * Merges one worker-local index into another, or into the shared index
+	 */
+	private static class MergeTask implements Runnable {
+		/** Index that is merged into */
+		private final InvertedIndex left;
+		
+		/** Index that is merged */
+		private final InvertedIndex right;
+
+		/**
+		 * Constructor of MergeTask Class.
+		 * 
+		 * @param left index that is merged into
+		 * @param right index that is merged
+		 */
+		public MergeTask(InvertedIndex left, InvertedIndex right) {
+			this.left = left;
+			this.right = right;
+		}
+		
+		@Override
+		public void run() {
+			left.addAll(right);
 		}
 	}
 }
\ No newline at end of file
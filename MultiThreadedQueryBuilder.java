@@ -1,8 +1,10 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * Multi-threaded version of QueryBuilder class that uses worker threads to handle individual queries.
@@ -19,6 +21,18 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 	/** Search inverted index from a file of multiple word queries */
 	private final WorkQueue queue; 
 	
+	/** Maximum number of search results per query, or 0 for all of them */
+	private final int limit;
+	
+	/** Largest distance between the query words of a match, or 0 to search for them anywhere */
+	private final int window;
+	
+	/** Results of earlier searches of the index, or null to always search */
+	private final QueryCache cache;
+	
+	/** Whether AND and NOT are boolean operators, otherwise they are ordinary query words */
+	private final boolean operators;
+	
 	/**
 	 * Constructor of MultiThreadedQueryBuilder Class.
 	 * 
@@ -26,9 +40,63 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 	 * @param queue storing requests and passed in from Driver
 	 */
 	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+		this(index, queue, 0);
+	}
+	
+	/**
+	 * Constructor of MultiThreadedQueryBuilder Class, only keeping the best search results.
+	 * 
+	 * @param index map from inverted index class
+	 * @param queue storing requests and passed in from Driver
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int limit) {
+		this(index, queue, limit, 0);
+	}
+	
+	/**
+	 * Constructor of MultiThreadedQueryBuilder Class, optionally searching for query words close together.
+	 * 
+	 * @param index map from inverted index class
+	 * @param queue storing requests and passed in from Driver
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int limit, int window) {
+		this(index, queue, limit, window, null);
+	}
+	
+	/**
+	 * Constructor of MultiThreadedQueryBuilder Class, reusing search results cached by earlier queries.
+	 * 
+	 * @param index map from inverted index class
+	 * @param queue storing requests and passed in from Driver
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 * @param cache results of earlier searches of the index, or null to always search
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int limit, int window, QueryCache cache) {
+		this(index, queue, limit, window, cache, false);
+	}
+	
+	/**
+	 * Constructor of MultiThreadedQueryBuilder Class, optionally reading query lines with AND or NOT as boolean queries.
+	 * 
+	 * @param index map from inverted index class
+	 * @param queue storing requests and passed in from Driver
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 * @param cache results of earlier searches of the index, or null to always search
+	 * @param operators true to read AND and NOT as boolean operators instead of query words
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, int limit, int window, QueryCache cache, boolean operators) {
 		this.index = index;
 		this.queryMap = new TreeMap<>();
 		this.queue = queue;
+		this.limit = limit;
+		this.window = window;
+		this.cache = cache;
+		this.operators = operators;
 	}
 	
 	@Override
@@ -64,9 +132,26 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 		
 		@Override
 		public void run() {
-			// efficient & thread-safe version
-			TreeSet<String> stemmedQueryLines = TextFileStemmer.uniqueStems(line);	
-			String query = String.join(" ", stemmedQueryLines);
+			// phrase queries keep the order of their words
+			ArrayList<String> phrase = QueryBuilderInterface.phraseStems(line);
+			TreeSet<String> stemmedQueryLines = null;
+			// boolean queries find every required word and no excluded word
+			TreeSet<String> required = new TreeSet<>();
+			TreeSet<String> excluded = new TreeSet<>();
+			boolean isBoolean = false;
+			String query;
+			if (phrase != null) {
+				query = phrase.isEmpty() ? "" : "\"" + String.join(" ", phrase) + "\"";
+			}
+			else if (operators && QueryBuilderInterface.booleanStems(line, required, excluded)) {
+				isBoolean = true;
+				query = QueryBuilderInterface.booleanQuery(required, excluded);
+			}
+			else {
+				// efficient & thread-safe version
+				stemmedQueryLines = TextFileStemmer.uniqueStems(line);
+				query = String.join(" ", stemmedQueryLines);
+			}
 			// test for negative case 
 			synchronized (queryMap) {
 				if (query.isEmpty() || queryMap.containsKey(query)) {
@@ -75,7 +160,20 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 				}
 			}
 			// get search results 
-			List<InvertedIndex.SearchResult> output = index.outputSearchResults(stemmedQueryLines, isExact);
+			List<InvertedIndex.SearchResult> output;
+			TreeSet<String> stems = stemmedQueryLines;
+			if (phrase != null) {
+				output = search(query, isExact, () -> index.phraseSearch(phrase, limit));
+			}
+			else if (isBoolean) {
+				output = search(query, isExact, () -> index.booleanSearch(required, excluded, limit));
+			}
+			else if (window > 0) {
+				output = search(query, isExact, () -> index.proximitySearch(stems, window, isExact, limit));
+			}
+			else {
+				output = search(query, isExact, () -> index.outputSearchResults(stems, isExact, limit));
+			}
 			synchronized(queryMap) { 
 				// put search results in map
 				queryMap.put(query, output);
@@ -83,6 +181,18 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 		}
 	}
 
+	/**
+	 * Helper method, searches the index through the cache if there is one.
+	 * 
+	 * @param query the stemmed query
+	 * @param isExact boolean check if exact search specified
+	 * @param search searches the index for the query
+	 * @return list of search results for the query
+	 */
+	private List<InvertedIndex.SearchResult> search(String query, boolean isExact, Supplier<List<InvertedIndex.SearchResult>> search) {
+		return cache == null ? search.get() : cache.search(index, query, isExact, limit, window, search);
+	}
+
 	@Override
 	public void output(Path resultsPath) throws IOException {
 		SimpleJsonWriter.asQuery(queryMap, resultsPath);
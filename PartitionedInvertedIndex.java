@@ -0,0 +1,511 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Thread-safe inverted index split by file path into several partitions. Every
+ * file path belongs to the partition chosen by its hash, and each partition is
+ * a complete thread-safe inverted index of its own file paths, including their
+ * word counts, so a partition can be built, loaded, or rebuilt by itself.
+ *
+ * Searches run on every partition at the same time on the work queue. Each
+ * partition returns complete, sorted results for its own file paths, which are
+ * merged with a k-way merge. Scoring models other than the default need
+ * statistics of the whole index, so they search the merged snapshot instead.
+ *
+ * @author Rhea Arora
+ */
+public class PartitionedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Partitions, each storing the file paths with the same hash */
+	private final Partition[] partitions;
+
+	/** File-path ids given out by {@link #addDocument(String)}, only used while synchronized on it */
+	private final DocumentTable documents;
+
+	/** Work queue used to run partition work at the same time */
+	private final WorkQueue queue;
+
+	/** Number of modifications so far, used to tell if the snapshot is outdated */
+	private final AtomicLong modifications;
+
+	/** Snapshot of all partitions, or null if not made yet, only used while synchronized on this index */
+	private IndexSnapshot combined;
+
+	/** Number of modifications included in the snapshot of all partitions */
+	private long combinedVersion;
+
+	/**
+	 * Constructor initializing the partitions.
+	 *
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 * @param partitions number of partitions
+	 * @param queue work queue used to run partition work at the same time
+	 */
+	public PartitionedInvertedIndex(boolean keepPositions, int partitions, WorkQueue queue) {
+		super(keepPositions);
+		this.partitions = new Partition[Math.max(1, partitions)];
+		for (int i = 0; i < this.partitions.length; i++) {
+			this.partitions[i] = new Partition(keepPositions);
+		}
+		this.documents = documentTable();
+		this.queue = queue;
+		this.modifications = new AtomicLong();
+		this.combined = null;
+		this.combinedVersion = -1;
+	}
+
+	/**
+	 * Gets the number of the partition a file path belongs to.
+	 *
+	 * @param location the file path
+	 * @return partition number
+	 */
+	public int partitionOf(String location) {
+		return Math.floorMod(location.hashCode(), partitions.length);
+	}
+
+	/**
+	 * Gets a partition, for example to rebuild or reload it by itself. Changes
+	 * made directly to a partition must only use its own file paths, and make
+	 * the snapshot of all partitions again once the partition changed.
+	 *
+	 * @param partition the partition number
+	 * @return the partition
+	 */
+	public ThreadSafeInvertedIndex getPartition(int partition) {
+		return partitions[partition];
+	}
+
+	/**
+	 * Number of partitions
+	 *
+	 * @return number of partitions
+	 */
+	public int partitionsSize() {
+		return partitions.length;
+	}
+
+	/**
+	 * Runs a task for every partition on the work queue and waits for them.
+	 *
+	 * @param task the task to run, given the partition number
+	 */
+	private void forEachPartition(IntConsumer task) {
+		ArrayList<Runnable> tasks = new ArrayList<>(partitions.length);
+		for (int i = 0; i < partitions.length; i++) {
+			int partition = i;
+			tasks.add(() -> task.accept(partition));
+		}
+		queue.invokeAll(tasks);
+	}
+
+	@Override
+	public int addDocument(String path) {
+		partitions[partitionOf(path)].addDocument(path);
+		synchronized (documents) {
+			return documents.add(path);
+		}
+	}
+
+	@Override
+	public void add(String word, String path, int position) {
+		partitions[partitionOf(path)].add(word, path, position);
+	}
+
+	@Override
+	public void add(String word, int document, int position) {
+		String location;
+		synchronized (documents) {
+			location = documents.getLocation(document);
+		}
+		add(word, location, position);
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+		addAll(local.freeze());
+	}
+
+	/**
+	 * Splits the snapshot by file path, and adds every part to its partition at
+	 * the same time.
+	 */
+	@Override
+	public void addAll(IndexSnapshot snapshot) {
+		forEachPartition(partition -> partitions[partition].addAll(part(snapshot, partition)));
+	}
+
+	/**
+	 * Copies the file paths of one partition out of a snapshot.
+	 *
+	 * @param snapshot the snapshot to copy from
+	 * @param partition the partition number
+	 * @return snapshot with only the file paths of the partition
+	 */
+	private IndexSnapshot part(IndexSnapshot snapshot, int partition) {
+		boolean keepPositions = hasPositions() && snapshot.hasPositions();
+		int[] ids = new int[snapshot.documentsSize()];
+		DocumentTable table = new DocumentTable();
+		for (int document = 0; document < ids.length; document++) {
+			String location = snapshot.getLocation(document);
+			if (partitionOf(location) == partition) {
+				ids[document] = table.add(location);
+				table.setCount(ids[document], snapshot.getCount(document));
+			}
+			else {
+				ids[document] = -1;
+			}
+		}
+		TreeMap<String, PostingList> words = new TreeMap<>();
+		for (int word = 0; word < snapshot.wordsSize(); word++) {
+			PostingList postings = new PostingList(keepPositions);
+			snapshot.copyPostings(word, postings, ids);
+			if (postings.size() > 0) {
+				words.put(snapshot.getWord(word), postings);
+			}
+		}
+		return new IndexSnapshot(words, table, keepPositions);
+	}
+
+	@Override
+	public void removeAll(Collection<String> locations) {
+		forEachPartition(partition -> partitions[partition].removeAll(locations));
+	}
+
+	/**
+	 * Loads a binary index file by splitting it into the partitions.
+	 */
+	@Override
+	public void load(Path path) throws IOException {
+		IndexSnapshot opened = IndexSnapshot.open(path);
+		if (hasPositions() && !opened.hasPositions()) {
+			throw new IOException("Index file does not store positions: " + path);
+		}
+		addAll(opened);
+	}
+
+	/**
+	 * Freezes every partition for searching, and combines them into one snapshot.
+	 */
+	@Override
+	public IndexSnapshot freeze() {
+		forEachPartition(partition -> partitions[partition].freeze());
+		return snapshot();
+	}
+
+	/**
+	 * Gets a snapshot of all partitions, made again if the index changed since
+	 * the last one. Only needed to write the index; searches use the partitions.
+	 */
+	@Override
+	protected synchronized IndexSnapshot snapshot() {
+		long version = modifications.get();
+		if (combined == null || combinedVersion != version) {
+			ArrayList<IndexSnapshot> parts = new ArrayList<>(partitions.length);
+			for (ThreadSafeInvertedIndex partition : partitions) {
+				parts.add(partition.freeze());
+			}
+			// partitions never share a file path
+			combined = IndexSnapshot.merge(parts);
+			combinedVersion = version;
+		}
+		return combined;
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.exactSearch(stemmedQueries);
+		}
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].exactSearch(stemmedQueries)));
+		return merge(results, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.partialSearch(stemmedQueries);
+		}
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].partialSearch(stemmedQueries)));
+		return merge(results, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.exactSearch(stemmedQueries, limit);
+		}
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].exactSearch(stemmedQueries, limit)));
+		return merge(results, limit);
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.partialSearch(stemmedQueries, limit);
+		}
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].partialSearch(stemmedQueries, limit)));
+		return merge(results, limit);
+	}
+
+	@Override
+	public List<SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, boolean isExact, int limit) {
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].proximitySearch(stemmedQueries, window, isExact, limit)));
+		return merge(results, limit > 0 ? limit : Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<SearchResult> booleanSearch(Collection<String> required, Collection<String> excluded, int limit) {
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].booleanSearch(required, excluded, limit)));
+		return merge(results, limit > 0 ? limit : Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<SearchResult> phraseSearch(List<String> phrase, int limit) {
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(partitions.length, null));
+		forEachPartition(partition -> results.set(partition, partitions[partition].phraseSearch(phrase, limit)));
+		return merge(results, limit > 0 ? limit : Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Merges the sorted search results of every partition into one sorted list.
+	 * Partitions never share a file path, so no results are combined.
+	 *
+	 * @param results sorted search results of each partition
+	 * @param limit maximum number of results
+	 * @return sorted list of search results
+	 */
+	private static List<SearchResult> merge(List<List<SearchResult>> results, int limit) {
+		int total = 0;
+		// next result of each partition, ordered by that result
+		PriorityQueue<Cursor> heads = new PriorityQueue<>();
+		for (List<SearchResult> partitionResults : results) {
+			total += partitionResults.size();
+			if (!partitionResults.isEmpty()) {
+				heads.add(new Cursor(partitionResults));
+			}
+		}
+		ArrayList<SearchResult> resultList = new ArrayList<>(Math.min(total, limit));
+		while (!heads.isEmpty() && resultList.size() < limit) {
+			Cursor head = heads.poll();
+			resultList.add(head.current);
+			if (head.advance()) {
+				heads.add(head);
+			}
+		}
+		return resultList;
+	}
+
+	@Override
+	public long getGeneration() {
+		return modifications.get();
+	}
+
+	/**
+	 * Writes the snapshot merged from every partition, which shares their
+	 * postings instead of copying the index again.
+	 */
+	@Override
+	public void output(Path path) throws IOException {
+		snapshot().output(path);
+	}
+
+	@Override
+	public void wordCountOutput(Path path) throws IOException {
+		snapshot().wordCountOutput(path);
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	@Override
+	public boolean containsDocument(String location) {
+		return partitions[partitionOf(location)].containsDocument(location);
+	}
+
+	@Override
+	public boolean containsWords(String word) {
+		for (ThreadSafeInvertedIndex partition : partitions) {
+			if (partition.containsWords(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean containsLocations(String word, String location) {
+		return partitions[partitionOf(location)].containsLocations(word, location);
+	}
+
+	@Override
+	public boolean containsPositions(String word, String location, int position) {
+		return partitions[partitionOf(location)].containsPositions(word, location, position);
+	}
+
+	@Override
+	public int wordsSize() {
+		return getWords().size();
+	}
+
+	@Override
+	public int locationsSize(String word) {
+		int size = 0;
+		for (ThreadSafeInvertedIndex partition : partitions) {
+			size += partition.locationsSize(word);
+		}
+		return size;
+	}
+
+	@Override
+	public int positionsSize(String word, String location) {
+		return partitions[partitionOf(location)].positionsSize(word, location);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+		for (ThreadSafeInvertedIndex partition : partitions) {
+			words.addAll(partition.getWords());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		TreeSet<String> locations = new TreeSet<>();
+		for (ThreadSafeInvertedIndex partition : partitions) {
+			locations.addAll(partition.getLocations(word));
+		}
+		return Collections.unmodifiableSet(locations);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		return partitions[partitionOf(location)].getPositions(word, location);
+	}
+
+	/**
+	 * Partition that counts its own changes as modifications of the whole
+	 * index, so changes made directly to a partition also make the snapshot of
+	 * all partitions and cached search results outdated.
+	 */
+	private class Partition extends ThreadSafeInvertedIndex {
+		/**
+		 * Constructor of Partition Class.
+		 *
+		 * @param keepPositions false to only store how many times a word appears in a file path
+		 */
+		public Partition(boolean keepPositions) {
+			super(keepPositions);
+		}
+
+		@Override
+		public int addDocument(String path) {
+			int document = super.addDocument(path);
+			modifications.incrementAndGet();
+			return document;
+		}
+
+		@Override
+		public void add(String word, int document, int position) {
+			super.add(word, document, position);
+			modifications.incrementAndGet();
+		}
+
+		@Override
+		public void add(String word, String path, int position) {
+			super.add(word, path, position);
+			modifications.incrementAndGet();
+		}
+
+		@Override
+		public void addAll(InvertedIndex local) {
+			super.addAll(local);
+			modifications.incrementAndGet();
+		}
+
+		@Override
+		public void addAll(IndexSnapshot snapshot) {
+			super.addAll(snapshot);
+			modifications.incrementAndGet();
+		}
+
+		@Override
+		public void removeAll(Collection<String> locations) {
+			super.removeAll(locations);
+			modifications.incrementAndGet();
+		}
+
+		@Override
+		public void load(Path path) throws IOException {
+			try {
+				super.load(path);
+			}
+			finally {
+				modifications.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Position in the sorted search results of one partition.
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+		/** Sorted search results of the partition */
+		private final List<SearchResult> results;
+
+		/** Index of the current result */
+		private int index;
+
+		/** The current result */
+		private SearchResult current;
+
+		/**
+		 * Constructor of Cursor Class, starting at the first result.
+		 *
+		 * @param results sorted search results of the partition, not empty
+		 */
+		public Cursor(List<SearchResult> results) {
+			this.results = results;
+			this.index = 0;
+			this.current = results.get(0);
+		}
+
+		/**
+		 * Moves to the next result.
+		 *
+		 * @return true if there is a next result
+		 */
+		public boolean advance() {
+			if (++index >= results.size()) {
+				return false;
+			}
+			current = results.get(index);
+			return true;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return current.compareTo(other.current);
+		}
+	}
+}
@@ -0,0 +1,439 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compressed, sorted set of word positions for one word in one file. Positions
+ * are stored as gaps from the previous position using variable-byte encoding,
+ * so that a typical position costs one or two bytes instead of a boxed Integer
+ * inside a tree node.
+ *
+ * Positions are expected to be added in increasing order (which is how files
+ * are read); out of order positions are still supported, but require the list
+ * to be decoded and encoded again.
+ *
+ * A list never changes the encoded bytes it already uses: positions are
+ * appended after them, and positions out of order are encoded into a new
+ * array. So {@link #frozenCopy()} can share the bytes with a snapshot, which
+ * keeps reading the positions as they were while the list grows.
+ *
+ * @author Rhea Arora
+ */
+public class PositionList extends AbstractSet<Integer> {
+
+	/** Initial number of bytes reserved for the encoded positions */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/** Variable-byte encoded gaps between positions */
+	private byte[] bytes;
+
+	/** Number of bytes used in the bytes array */
+	private int length;
+
+	/** Number of positions stored */
+	private int size;
+
+	/** Largest (last) position stored */
+	private int last;
+
+	/** Whether the bytes are shared with the list they were copied from, and must be copied before writing */
+	private boolean shared;
+
+	/** Initializes an empty position list */
+	public PositionList() {
+		this.bytes = new byte[INITIAL_CAPACITY];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+		this.shared = false;
+	}
+
+	/**
+	 * Gets a copy of the list that later changes to this list do not affect,
+	 * for example for a snapshot. The copy shares the encoded bytes instead of
+	 * copying them, and copies them only if the copy itself is changed.
+	 *
+	 * @return a copy of the positions stored now
+	 */
+	public PositionList frozenCopy() {
+		PositionList copy = new PositionList();
+		copy.bytes = bytes;
+		copy.length = length;
+		copy.size = size;
+		copy.last = last;
+		copy.shared = true;
+		return copy;
+	}
+
+	/**
+	 * Initializes a position list from encoded gaps, for example read back from
+	 * an index file.
+	 *
+	 * @param buffer buffer holding the encoded gaps
+	 * @param offset index of the first encoded byte in the buffer
+	 * @param length number of encoded bytes
+	 * @return the decoded position list
+	 * @see #write(DataOutput)
+	 */
+	public static PositionList decode(ByteBuffer buffer, int offset, int length) {
+		PositionList list = new PositionList();
+		list.bytes = new byte[Math.max(length, 1)];
+		buffer.get(offset, list.bytes, 0, length);
+		list.length = length;
+		// count the positions and find the last one
+		for (int i = 0; i < length; i++) {
+			if (list.bytes[i] >= 0) {
+				list.size++;
+			}
+		}
+		int[] positions = list.toIntArray();
+		list.last = positions.length == 0 ? 0 : positions[positions.length - 1];
+		return list;
+	}
+
+	/**
+	 * Adds a position to the list if it is not already stored.
+	 *
+	 * @param position the position to add, must be positive
+	 * @return true if the list changed
+	 */
+	public boolean add(int position) {
+		if (position > last) {
+			writeGap(position - last);
+			last = position;
+			size++;
+			return true;
+		}
+		if (contains(position)) {
+			return false;
+		}
+		int[] merged = mergeSorted(toIntArray(), new int[] { position });
+		encode(merged, merged.length);
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds every position of another list. When all of the other positions come
+	 * after the positions in this list, the encoded gaps are copied directly.
+	 *
+	 * @param other the positions to merge into this list
+	 * @return true if the list changed
+	 */
+	public boolean addAll(PositionList other) {
+		return addAll(other, 0);
+	}
+
+	/**
+	 * Adds every position of another list, moved by an offset, for example the
+	 * positions of a later part of the same file. Moving the positions only
+	 * changes the first encoded gap.
+	 *
+	 * @param other the positions to merge into this list
+	 * @param offset number added to every position of the other list
+	 * @return true if the list changed
+	 */
+	public boolean addAll(PositionList other, int offset) {
+		if (other.size == 0) {
+			return false;
+		}
+		if (size == 0 && offset == 0) {
+			bytes = Arrays.copyOf(other.bytes, Math.max(other.length, INITIAL_CAPACITY));
+			shared = false;
+			length = other.length;
+			size = other.size;
+			last = other.last;
+			return true;
+		}
+		int first = other.first() + offset;
+		if (first > last) {
+			// only the first gap changes, the remaining gaps are still relative
+			int skip = gapLength(other.bytes, 0);
+			writeGap(first - last);
+			ensureCapacity(other.length - skip);
+			System.arraycopy(other.bytes, skip, bytes, length, other.length - skip);
+			length += other.length - skip;
+			size += other.size;
+			last = other.last + offset;
+			return true;
+		}
+		int before = size;
+		int[] positions = other.toIntArray();
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] += offset;
+		}
+		int[] merged = mergeSorted(toIntArray(), positions);
+		encode(merged, merged.length);
+		return size != before;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Integer> positions) {
+		if (positions instanceof PositionList) {
+			return addAll((PositionList) positions);
+		}
+		return super.addAll(positions);
+	}
+
+	/**
+	 * Checks if the list contains a position.
+	 *
+	 * @param position the position to find
+	 * @return true if the position is stored
+	 */
+	public boolean contains(int position) {
+		if (position > last || position <= 0) {
+			return false;
+		}
+		int current = 0;
+		int offset = 0;
+		while (offset < length) {
+			int gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[offset++];
+				gap |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			current += gap;
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object position) {
+		return position instanceof Integer && contains(((Integer) position).intValue());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the first (smallest) position.
+	 *
+	 * @return the first position, or 0 if the list is empty
+	 */
+	public int first() {
+		if (size == 0) {
+			return 0;
+		}
+		int gap = 0;
+		int shift = 0;
+		int offset = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			gap |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return gap;
+	}
+
+	/**
+	 * Gets the last (largest) position.
+	 *
+	 * @return the last position, or 0 if the list is empty
+	 */
+	public int last() {
+		return last;
+	}
+
+	/**
+	 * Number of bytes used by the encoded positions.
+	 *
+	 * @return number of encoded bytes
+	 */
+	public int encodedLength() {
+		return length;
+	}
+
+	/**
+	 * Writes the encoded positions, which can be read back with
+	 * {@link #decode(ByteBuffer, int, int)}.
+	 *
+	 * @param out the output to write to
+	 * @throws IOException if an IO error occurs
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.write(bytes, 0, length);
+	}
+
+	/**
+	 * Releases any unused capacity of the encoded bytes.
+	 */
+	public void trim() {
+		if (bytes.length > length) {
+			byte[] trimmed = new byte[Math.max(length, 1)];
+			System.arraycopy(bytes, 0, trimmed, 0, length);
+			bytes = trimmed;
+			shared = false;
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			/** Offset of the next gap to decode */
+			private int offset = 0;
+
+			/** Last decoded position */
+			private int current = 0;
+
+			@Override
+			public boolean hasNext() {
+				return offset < length;
+			}
+
+			@Override
+			public Integer next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int gap = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = bytes[offset++];
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				current += gap;
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * Decodes the positions into a new sorted array.
+	 *
+	 * @return the positions in increasing order
+	 */
+	public int[] toIntArray() {
+		int[] positions = new int[size];
+		int current = 0;
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			int gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[offset++];
+				gap |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			current += gap;
+			positions[i] = current;
+		}
+		return positions;
+	}
+
+	/**
+	 * Replaces the contents of this list with the sorted positions given.
+	 *
+	 * @param positions sorted, distinct positions
+	 * @param count number of positions to use from the array
+	 */
+	private void encode(int[] positions, int count) {
+		// a new array, since a frozen copy may still read the old one
+		bytes = new byte[Math.max(INITIAL_CAPACITY, count)];
+		shared = false;
+		length = 0;
+		size = 0;
+		last = 0;
+		for (int i = 0; i < count; i++) {
+			writeGap(positions[i] - last);
+			last = positions[i];
+			size++;
+		}
+	}
+
+	/**
+	 * Appends a gap using variable-byte encoding, seven bits per byte with the
+	 * high bit set on every byte except the last.
+	 *
+	 * @param gap the positive gap to write
+	 */
+	private void writeGap(int gap) {
+		ensureCapacity(5);
+		while ((gap & ~0x7F) != 0) {
+			bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+			gap >>>= 7;
+		}
+		bytes[length++] = (byte) gap;
+	}
+
+	/**
+	 * Makes room for at least the given number of additional bytes.
+	 *
+	 * @param needed number of bytes about to be written
+	 */
+	private void ensureCapacity(int needed) {
+		if (shared || length + needed > bytes.length) {
+			int capacity = Math.max(length + needed, bytes.length + (bytes.length >> 1) + 1);
+			byte[] grown = new byte[capacity];
+			System.arraycopy(bytes, 0, grown, 0, length);
+			bytes = grown;
+			shared = false;
+		}
+	}
+
+	/**
+	 * Number of bytes used by the gap starting at the offset.
+	 *
+	 * @param encoded the encoded bytes
+	 * @param offset start of the gap
+	 * @return number of bytes in the gap
+	 */
+	private static int gapLength(byte[] encoded, int offset) {
+		int start = offset;
+		while (encoded[offset] < 0) {
+			offset++;
+		}
+		return offset - start + 1;
+	}
+
+	/**
+	 * Merges two sorted arrays, dropping duplicates.
+	 *
+	 * @param a first sorted array
+	 * @param b second sorted array
+	 * @return sorted array of distinct values from both
+	 */
+	private static int[] mergeSorted(int[] a, int[] b) {
+		int[] merged = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length || j < b.length) {
+			int next;
+			if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+				next = a[i++];
+			}
+			else {
+				next = b[j++];
+			}
+			if (k == 0 || merged[k - 1] != next) {
+				merged[k++] = next;
+			}
+		}
+		if (k == merged.length) {
+			return merged;
+		}
+		int[] distinct = new int[k];
+		System.arraycopy(merged, 0, distinct, 0, k);
+		return distinct;
+	}
+}
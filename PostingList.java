@@ -0,0 +1,293 @@
+import java.util.Arrays;
+
+/**
+ * Postings of one word, stored as parallel arrays of document ids and
+ * positions sorted by document id. Lists built without positions only keep the
+ * number of times the word appears in each document.
+ *
+ * @see DocumentTable
+ * @see PositionList
+ * @author Rhea Arora
+ */
+public class PostingList {
+
+	/** Initial number of postings reserved */
+	private static final int INITIAL_CAPACITY = 2;
+
+	/** Sorted document ids */
+	private int[] documents;
+
+	/** Positions of the word in each document, or null if positions are not kept */
+	private PositionList[] positions;
+
+	/** Number of times the word appears in each document, or null if positions are kept */
+	private int[] frequencies;
+
+	/** Number of postings stored */
+	private int size;
+
+	/** Initializes an empty posting list that keeps positions */
+	public PostingList() {
+		this(true);
+	}
+
+	/**
+	 * Initializes an empty posting list.
+	 *
+	 * @param keepPositions whether positions are kept or only counted
+	 */
+	public PostingList(boolean keepPositions) {
+		this.documents = new int[INITIAL_CAPACITY];
+		if (keepPositions) {
+			this.positions = new PositionList[INITIAL_CAPACITY];
+		}
+		else {
+			this.frequencies = new int[INITIAL_CAPACITY];
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a position of the word in a document. Lists without positions cannot
+	 * detect a repeated position, so every call is counted.
+	 *
+	 * @param document id of the document
+	 * @param position position of the word in the document
+	 * @return true if the position was not stored before
+	 */
+	public boolean add(int document, int position) {
+		int index = postingFor(document);
+		if (positions == null) {
+			frequencies[index]++;
+			return true;
+		}
+		return positions[index].add(position);
+	}
+
+	/**
+	 * Merges postings from another list into this one. Postings of a list
+	 * without positions can only be merged into another list without positions.
+	 *
+	 * @param other the postings to merge
+	 * @param ids new document id for each document id used by the other list
+	 * @throws IllegalArgumentException if the other list does not keep positions but this list does
+	 */
+	public void addAll(PostingList other, int[] ids) {
+		addAll(other, ids, 0);
+	}
+
+	/**
+	 * Merges postings from another list into this one, moving every position of
+	 * the other list by an offset.
+	 *
+	 * @param other the postings to merge
+	 * @param ids new document id for each document id used by the other list
+	 * @param offset number added to every position of the other list
+	 * @throws IllegalArgumentException if the other list does not keep positions but this list does
+	 */
+	public void addAll(PostingList other, int[] ids, int offset) {
+		if (positions != null && other.positions == null) {
+			throw new IllegalArgumentException("Cannot merge postings without positions.");
+		}
+		for (int i = 0; i < other.size; i++) {
+			add(ids[other.documents[i]], other.positions(i), other.frequency(i), offset);
+		}
+	}
+
+	/**
+	 * Adds the positions of the word in a document all at once.
+	 *
+	 * @param document id of the document
+	 * @param positions positions of the word in the document, or null if they are not known
+	 * @param frequency number of times the word appears in the document
+	 * @throws IllegalArgumentException if this list keeps positions but none are given
+	 */
+	public void add(int document, PositionList positions, int frequency) {
+		add(document, positions, frequency, 0);
+	}
+
+	/**
+	 * Adds the positions of the word in a document all at once, moved by an offset.
+	 *
+	 * @param document id of the document
+	 * @param positions positions of the word in the document, or null if they are not known
+	 * @param frequency number of times the word appears in the document
+	 * @param offset number added to every position
+	 * @throws IllegalArgumentException if this list keeps positions but none are given
+	 */
+	public void add(int document, PositionList positions, int frequency, int offset) {
+		if (this.positions != null && positions == null) {
+			throw new IllegalArgumentException("Cannot merge postings without positions.");
+		}
+		int index = postingFor(document);
+		if (this.positions == null) {
+			frequencies[index] += frequency;
+		}
+		else {
+			this.positions[index].addAll(positions, offset);
+		}
+	}
+
+	/**
+	 * Copies this list, including the positions.
+	 *
+	 * @return a copy that does not share anything with this list
+	 */
+	public PostingList copy() {
+		PostingList copy = new PostingList(positions != null);
+		for (int i = 0; i < size; i++) {
+			copy.add(documents[i], positions(i), frequency(i));
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies this list for a snapshot. The positions share their encoded bytes
+	 * with this list instead of copying them.
+	 *
+	 * @return a copy that later changes to this list do not affect
+	 * @see PositionList#frozenCopy()
+	 */
+	public PostingList frozenCopy() {
+		PostingList copy = new PostingList(positions != null);
+		int capacity = Math.max(size, INITIAL_CAPACITY);
+		copy.documents = Arrays.copyOf(documents, capacity);
+		if (positions != null) {
+			copy.positions = new PositionList[capacity];
+			for (int i = 0; i < size; i++) {
+				copy.positions[i] = positions[i].frozenCopy();
+			}
+		}
+		else {
+			copy.frequencies = Arrays.copyOf(frequencies, capacity);
+		}
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Removes the postings of documents.
+	 *
+	 * @param removed whether each document id is removed; ids past the end are kept
+	 */
+	public void removeAll(boolean[] removed) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			int document = documents[i];
+			if (document < removed.length && removed[document]) {
+				continue;
+			}
+			documents[kept] = document;
+			if (positions == null) {
+				frequencies[kept] = frequencies[i];
+			}
+			else {
+				positions[kept] = positions[i];
+			}
+			kept++;
+		}
+		if (positions != null) {
+			Arrays.fill(positions, kept, size, null);
+		}
+		size = kept;
+	}
+
+	/**
+	 * Checks if this list keeps positions.
+	 *
+	 * @return true if positions are kept, false if they are only counted
+	 */
+	public boolean hasPositions() {
+		return positions != null;
+	}
+
+	/**
+	 * Number of documents in this list.
+	 *
+	 * @return number of postings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the document id of a posting.
+	 *
+	 * @param index index of the posting
+	 * @return document id
+	 */
+	public int document(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Gets the positions of a posting.
+	 *
+	 * @param index index of the posting
+	 * @return positions of the word in the document, or null if positions are not kept
+	 */
+	public PositionList positions(int index) {
+		return positions == null ? null : positions[index];
+	}
+
+	/**
+	 * Gets the number of times the word appears in the document of a posting.
+	 *
+	 * @param index index of the posting
+	 * @return frequency of the word in the document
+	 */
+	public int frequency(int index) {
+		return positions == null ? frequencies[index] : positions[index].size();
+	}
+
+	/**
+	 * Finds the posting of a document.
+	 *
+	 * @param document id of the document
+	 * @return index of the posting, or a negative value if not found
+	 */
+	public int find(int document) {
+		if (size > 0 && documents[size - 1] == document) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Finds the posting of a document, adding an empty posting if needed.
+	 * Documents usually arrive in increasing id order, so the common case is
+	 * the last posting or a new posting at the end.
+	 *
+	 * @param document id of the document
+	 * @return index of the posting
+	 */
+	private int postingFor(int document) {
+		int index = find(document);
+		if (index >= 0) {
+			return index;
+		}
+		index = -index - 1;
+		if (size == documents.length) {
+			int capacity = documents.length + (documents.length >> 1) + 1;
+			documents = Arrays.copyOf(documents, capacity);
+			if (positions == null) {
+				frequencies = Arrays.copyOf(frequencies, capacity);
+			}
+			else {
+				positions = Arrays.copyOf(positions, capacity);
+			}
+		}
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		documents[index] = document;
+		if (positions == null) {
+			System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+			frequencies[index] = 0;
+		}
+		else {
+			System.arraycopy(positions, index, positions, index + 1, size - index);
+			positions[index] = new PositionList();
+		}
+		size++;
+		return index;
+	}
+}
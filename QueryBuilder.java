@@ -1,8 +1,10 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 /**
  * Reads queries from text file, stems queries, and output list of search results for query.
  * @author Rhea Arora
@@ -15,14 +17,76 @@ public class QueryBuilder implements QueryBuilderInterface {
 	/** Accessing InvertedIndex methods through object initialization */
 	private final InvertedIndex index;
 	
+	/** Maximum number of search results per query, or 0 for all of them */
+	private final int limit;
+	
+	/** Largest distance between the query words of a match, or 0 to search for them anywhere */
+	private final int window;
+	
+	/** Results of earlier searches of the index, or null to always search */
+	private final QueryCache cache;
+	
+	/** Whether AND and NOT are boolean operators, otherwise they are ordinary query words */
+	private final boolean operators;
+	
 	/**
 	 * Constructor initializing queryMap and index. 
 	 * 
 	 * @param index map from inverted index class
 	 */
 	public QueryBuilder(InvertedIndex index) {
+		this(index, 0);
+	}
+	
+	/**
+	 * Constructor initializing queryMap and index, only keeping the best search results. 
+	 * 
+	 * @param index map from inverted index class
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 */
+	public QueryBuilder(InvertedIndex index, int limit) {
+		this(index, limit, 0);
+	}
+	
+	/**
+	 * Constructor initializing queryMap and index, optionally searching for query words close together. 
+	 * 
+	 * @param index map from inverted index class
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 */
+	public QueryBuilder(InvertedIndex index, int limit, int window) {
+		this(index, limit, window, null);
+	}
+	
+	/**
+	 * Constructor initializing queryMap and index, reusing search results cached by earlier queries. 
+	 * 
+	 * @param index map from inverted index class
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 * @param cache results of earlier searches of the index, or null to always search
+	 */
+	public QueryBuilder(InvertedIndex index, int limit, int window, QueryCache cache) {
+		this(index, limit, window, cache, false);
+	}
+	
+	/**
+	 * Constructor initializing queryMap and index, optionally reading query lines with AND or NOT as boolean queries. 
+	 * 
+	 * @param index map from inverted index class
+	 * @param limit maximum number of search results per query, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 * @param cache results of earlier searches of the index, or null to always search
+	 * @param operators true to read AND and NOT as boolean operators instead of query words
+	 */
+	public QueryBuilder(InvertedIndex index, int limit, int window, QueryCache cache, boolean operators) {
 		this.queryMap = new TreeMap<>();
 		this.index = index;
+		this.limit = limit;
+		this.window = window;
+		this.cache = cache;
+		this.operators = operators;
 	}
 	/**
 	 * Reads query path and parses queries with helper method. 
@@ -42,13 +106,43 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 * @param isExact boolean check if exact search specified 
 	 */
 	public void parseQueries(String line, boolean isExact) {
+		ArrayList<String> phrase = QueryBuilderInterface.phraseStems(line);
+		if (phrase != null) {
+			String query = "\"" + String.join(" ", phrase) + "\"";
+			if (!phrase.isEmpty() && !queryMap.containsKey(query)) {
+				queryMap.put(query, search(query, isExact, () -> index.phraseSearch(phrase, limit)));
+			}
+			return;
+		}
+		TreeSet<String> required = new TreeSet<>();
+		TreeSet<String> excluded = new TreeSet<>();
+		if (operators && QueryBuilderInterface.booleanStems(line, required, excluded)) {
+			String query = QueryBuilderInterface.booleanQuery(required, excluded);
+			if (!query.isEmpty() && !queryMap.containsKey(query)) {
+				queryMap.put(query, search(query, isExact, () -> index.booleanSearch(required, excluded, limit)));
+			}
+			return;
+		}
 		TreeSet<String> stemmedQueryLines = TextFileStemmer.uniqueStems(line);
 		String query = String.join(" ", stemmedQueryLines);
 		if(!stemmedQueryLines.isEmpty() && (!queryMap.containsKey(query))) { 
-			queryMap.put(query, index.outputSearchResults(stemmedQueryLines, isExact));
+			queryMap.put(query, search(query, isExact, () -> window > 0 ?
+					index.proximitySearch(stemmedQueryLines, window, isExact, limit) : index.outputSearchResults(stemmedQueryLines, isExact, limit)));
 		}
 	}
 	
+	/**
+	 * Helper method, searches the index through the cache if there is one.
+	 * 
+	 * @param query the stemmed query
+	 * @param isExact boolean check if exact search specified
+	 * @param search searches the index for the query
+	 * @return list of search results for the query
+	 */
+	private List<InvertedIndex.SearchResult> search(String query, boolean isExact, Supplier<List<InvertedIndex.SearchResult>> search) {
+		return cache == null ? search.get() : cache.search(index, query, isExact, limit, window, search);
+	}
+	
 	/**
 	 * Helper method to output stemmed queries and list of search results for query.
 	 * 
@@ -3,6 +3,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import opennlp.tools.stemmer.Stemmer;
 
 /**
  * @author Queen
@@ -37,6 +41,70 @@ public interface QueryBuilderInterface {
 	 */
 	public void parseQueries(String line, boolean isExact);
 	
+	/**
+	 * Gets the stemmed words of a phrase query, which is a query line written in
+	 * double quotes.
+	 * 
+	 * @param line from query text file
+	 * @return stemmed words in order, or null if the line is not a phrase query
+	 */
+	public static ArrayList<String> phraseStems(String line) {
+		String query = line.strip();
+		if (query.length() < 2 || !query.startsWith("\"") || !query.endsWith("\"")) {
+			return null;
+		}
+		return TextFileStemmer.listStems(query);
+	}
+	
+	/**
+	 * Gets the stemmed words of a boolean query, which is a query line using the
+	 * AND or NOT operators. Every word must be found, unless NOT is written
+	 * before it, then it must not be found. A line with only excluded words is
+	 * still a boolean query, which matches no documents.
+	 * 
+	 * @param line from query text file
+	 * @param required adds the stemmed words that must be found
+	 * @param excluded adds the stemmed words that must not be found
+	 * @return true if the line is a boolean query
+	 */
+	public static boolean booleanStems(String line, Collection<String> required, Collection<String> excluded) {
+		String[] tokens = TextParser.split(line);
+		boolean operators = false;
+		for (String token : tokens) {
+			operators |= token.equals("AND") || token.equals("NOT");
+		}
+		if (!operators) {
+			return false;
+		}
+		Stemmer stemmer = StemCache.get();
+		boolean negated = false;
+		for (String token : tokens) {
+			if (token.equals("NOT")) {
+				negated = true;
+			}
+			else if (!token.equals("AND")) {
+				TextFileStemmer.stemLine(token, stemmer, negated ? excluded : required);
+				negated = false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes a boolean query the same way for every line with the same words.
+	 * 
+	 * @param required stemmed words that must be found, sorted
+	 * @param excluded stemmed words that must not be found, sorted
+	 * @return the query, or an empty string if the line has no words
+	 */
+	public static String booleanQuery(Collection<String> required, Collection<String> excluded) {
+		StringBuilder query = new StringBuilder(String.join(" AND ", required));
+		for (String word : excluded) {
+			query.append(query.length() > 0 ? " NOT " : "NOT ").append(word);
+		}
+		return query.toString();
+	}
+	
 	/**
 	 * Helper method to output stemmed queries and list of search results for query.
 	 * 
@@ -0,0 +1,230 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of search results, shared by query builders so repeated
+ * queries are only searched once. The least recently used results are dropped
+ * when the cache is full. Every result remembers the generation of the index
+ * it was searched in, and is not used once the index has changed.
+ *
+ * Safe to use from several worker threads at the same time. Searches run
+ * outside the lock, so two threads may search the same query at once.
+ *
+ * A query builder already searches every distinct query of its queries file
+ * only once, so a cache only gets hits when it outlives one query builder,
+ * for example when several builders or query files share it.
+ *
+ * @see InvertedIndex#getGeneration()
+ * @author Rhea Arora
+ */
+public class QueryCache {
+
+	/** Maximum number of cached queries */
+	private final int capacity;
+
+	/** Cached results in access order, only used while synchronized on it */
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/** Number of searches answered from the cache */
+	private final LongAdder hits;
+
+	/** Number of searches not found in the cache */
+	private final LongAdder misses;
+
+	/** Number of cached results not used since the index changed */
+	private final LongAdder invalidations;
+
+	/** Number of cached results dropped because the cache was full */
+	private final LongAdder evictions;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity maximum number of cached queries, at least 1
+	 */
+	public QueryCache(int capacity) {
+		this.capacity = Math.max(1, capacity);
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				if (size() > QueryCache.this.capacity) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.invalidations = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/**
+	 * Gets the results of a query from the cache, or searches the index and
+	 * caches them. Cached results are only used if the index did not change
+	 * since they were searched.
+	 *
+	 * @param index the index searched
+	 * @param query the query, already stemmed and written the same way every time
+	 * @param isExact whether exact search is used
+	 * @param limit maximum number of search results, or 0 for all of them
+	 * @param window largest distance between the query words of a match, or 0 to search for them anywhere
+	 * @param search searches the index for the query
+	 * @return the search results
+	 */
+	public List<InvertedIndex.SearchResult> search(InvertedIndex index, String query, boolean isExact, int limit,
+			int window, Supplier<List<InvertedIndex.SearchResult>> search) {
+		Key key = new Key(query, isExact, limit, window, index.getScoring());
+		// read before searching, so results are never newer than their generation
+		long generation = index.getGeneration();
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.generation == generation) {
+					hits.increment();
+					return entry.results;
+				}
+				entries.remove(key);
+				invalidations.increment();
+			}
+		}
+		misses.increment();
+		List<InvertedIndex.SearchResult> results = search.get();
+		synchronized (entries) {
+			entries.put(key, new Entry(results, generation));
+		}
+		return results;
+	}
+
+	/**
+	 * Number of cached queries.
+	 *
+	 * @return number of cached queries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Number of searches answered from the cache.
+	 *
+	 * @return number of hits
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of searches not found in the cache, including outdated results.
+	 *
+	 * @return number of misses
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Number of cached results not used because the index changed.
+	 *
+	 * @return number of invalidations
+	 */
+	public long invalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * Number of cached results dropped because the cache was full.
+	 *
+	 * @return number of evictions
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d queries, %d hits, %d misses, %d invalidations, %d evictions",
+				size(), hits(), misses(), invalidations(), evictions());
+	}
+
+	/**
+	 * Everything that changes the results of a query.
+	 */
+	private static class Key {
+		/** The stemmed query */
+		private final String query;
+
+		/** Whether exact search is used */
+		private final boolean isExact;
+
+		/** Maximum number of search results */
+		private final int limit;
+
+		/** Largest distance between the query words of a match */
+		private final int window;
+
+		/** Model used to score the results */
+		private final Scoring scoring;
+
+		/**
+		 * Initializes the key.
+		 *
+		 * @param query the stemmed query
+		 * @param isExact whether exact search is used
+		 * @param limit maximum number of search results
+		 * @param window largest distance between the query words of a match
+		 * @param scoring model used to score the results
+		 */
+		public Key(String query, boolean isExact, int limit, int window, Scoring scoring) {
+			this.query = query;
+			this.isExact = isExact;
+			this.limit = limit;
+			this.window = window;
+			this.scoring = scoring;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return query.equals(key.query) && isExact == key.isExact && limit == key.limit && window == key.window
+					&& scoring == key.scoring;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, isExact, limit, window, scoring);
+		}
+	}
+
+	/**
+	 * Cached results together with the generation of the index they were searched in.
+	 */
+	private static class Entry {
+		/** The search results */
+		private final List<InvertedIndex.SearchResult> results;
+
+		/** Generation of the index when the search started */
+		private final long generation;
+
+		/**
+		 * Initializes the entry.
+		 *
+		 * @param results the search results
+		 * @param generation generation of the index when the search started
+		 */
+		public Entry(List<InvertedIndex.SearchResult> results, long generation) {
+			this.results = results;
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Models used to score how well a file path matches the query words. Every
+ * query word found in a file path gets its own score, and the score of the
+ * file path is the sum of them. The statistics a model needs, the inverse
+ * document frequency of each word and the length norm of each file path, are
+ * computed once per snapshot and kept in arrays.
+ *
+ * @see IndexSnapshot
+ * @author Rhea Arora
+ */
+public enum Scoring {
+
+	/** Matches divided by the count of words of the file path, the default */
+	MATCHES {
+		@Override
+		public double idf(int documentFrequency, int documents) {
+			return 1;
+		}
+
+		@Override
+		public double norm(int length, double averageLength) {
+			return length;
+		}
+
+		@Override
+		public double score(int frequency, double idf, double norm) {
+			return frequency / norm;
+		}
+	},
+
+	/** Log-scaled matches times the inverse document frequency, divided by the square root of the count of words */
+	TFIDF {
+		@Override
+		public double idf(int documentFrequency, int documents) {
+			return Math.log(1 + (double) documents / documentFrequency);
+		}
+
+		@Override
+		public double norm(int length, double averageLength) {
+			return 1 / Math.sqrt(length);
+		}
+
+		@Override
+		public double score(int frequency, double idf, double norm) {
+			return (1 + Math.log(frequency)) * idf * norm;
+		}
+	},
+
+	/** Okapi BM25, with matches that saturate and file paths longer than average counting less */
+	BM25 {
+		@Override
+		public double idf(int documentFrequency, int documents) {
+			return Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+		}
+
+		@Override
+		public double norm(int length, double averageLength) {
+			return K1 * (1 - B + B * length / averageLength);
+		}
+
+		@Override
+		public double score(int frequency, double idf, double norm) {
+			return idf * frequency * (K1 + 1) / (frequency + norm);
+		}
+	};
+
+	/** How quickly repeated matches stop adding to the BM25 score */
+	private static final double K1 = 1.2;
+
+	/** How much the BM25 score depends on the count of words of the file path */
+	private static final double B = 0.75;
+
+	/**
+	 * Computes the weight of a word from the number of file paths containing it.
+	 *
+	 * @param documentFrequency number of file paths containing the word, at least 1
+	 * @param documents number of file paths in the index
+	 * @return weight of the word
+	 */
+	public abstract double idf(int documentFrequency, int documents);
+
+	/**
+	 * Computes the length norm of a file path.
+	 *
+	 * @param length count of words of the file path, at least 1
+	 * @param averageLength average count of words of the file paths in the index
+	 * @return norm of the file path
+	 */
+	public abstract double norm(int length, double averageLength);
+
+	/**
+	 * Scores one query word found in a file path. Scores never decrease when the
+	 * frequency increases, which the top results search depends on.
+	 *
+	 * @param frequency number of times the word appears in the file path
+	 * @param idf weight of the word
+	 * @param norm norm of the file path
+	 * @return score of the word in the file path
+	 */
+	public abstract double score(int frequency, double idf, double norm);
+
+	/**
+	 * Gets the scoring model with the given name, ignoring case.
+	 *
+	 * @param name name of the model, such as bm25 or tfidf
+	 * @return the scoring model
+	 * @throws IllegalArgumentException if there is no model with the name
+	 */
+	public static Scoring forName(String name) {
+		return valueOf(name.toUpperCase().replace("-", ""));
+	}
+}
@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe index made of immutable segments. Every local index merged with
+ * {@link #addAll(InvertedIndex)} is frozen by the worker thread and kept as a
+ * new segment, so merging does not need the write lock of the index. Small
+ * segments of similar size are merged into larger ones in the background on
+ * the work queue. Searches run on every segment and combine the results.
+ * Scoring models other than the default need statistics of the whole index,
+ * so they search the segments merged into one snapshot instead.
+ *
+ * Other methods see the index as a whole, so they first copy all segments into
+ * the inverted index this class extends.
+ *
+ * @author Rhea Arora
+ */
+public class SegmentedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Number of segments of similar size that are merged together */
+	private static final int MERGE_FACTOR = 4;
+
+	/** Current segments, replaced as a whole whenever segments change */
+	private volatile List<IndexSnapshot> segments;
+
+	/** Segments currently being merged in the background */
+	private final Set<IndexSnapshot> merging;
+
+	/** File-path locations in any segment */
+	private final HashSet<String> locations;
+
+	/** Lock protecting the segment list, merging set, and locations */
+	private final Object segmentLock;
+
+	/** Work queue used to merge segments in the background */
+	private final WorkQueue queue;
+
+	/** Number of times segments were copied into the extended index, only used while holding the segment lock */
+	private long compactions;
+
+	/** Number of segments added, which change the index without changing the extended index */
+	private final AtomicLong segmentsAdded;
+
+	/** Searched snapshots merged into one, or null if not made yet, only used while synchronized on this index */
+	private IndexSnapshot whole;
+
+	/** Searched snapshots that were merged into the whole index */
+	private List<IndexSnapshot> wholeParts;
+
+	/**
+	 * Constructor initializing the segments.
+	 *
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 * @param queue work queue used to merge segments in the background
+	 */
+	public SegmentedInvertedIndex(boolean keepPositions, WorkQueue queue) {
+		super(keepPositions);
+		this.segments = Collections.emptyList();
+		this.merging = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.locations = new HashSet<>();
+		this.segmentLock = new Object();
+		this.queue = queue;
+		this.compactions = 0;
+		this.segmentsAdded = new AtomicLong();
+		this.whole = null;
+		this.wholeParts = null;
+	}
+
+	/**
+	 * Adds the local index as a new segment. If the local index shares a
+	 * file-path location with the index, the segments are copied into the index
+	 * and the local index is merged into it instead.
+	 */
+	@Override
+	public void addAll(InvertedIndex local) {
+		IndexSnapshot segment = local.freeze();
+		if (segment.wordsSize() == 0) {
+			return;
+		}
+		synchronized (segmentLock) {
+			boolean shared = false;
+			for (int document = 0; document < segment.documentsSize(); document++) {
+				String location = segment.getLocation(document);
+				shared |= locations.contains(location) || super.containsDocument(location);
+			}
+			if (!shared) {
+				for (int document = 0; document < segment.documentsSize(); document++) {
+					locations.add(segment.getLocation(document));
+				}
+				ArrayList<IndexSnapshot> added = new ArrayList<>(segments);
+				added.add(segment);
+				segments = Collections.unmodifiableList(added);
+				segmentsAdded.incrementAndGet();
+				scheduleMerges();
+				return;
+			}
+			// no segment can be added between copying the segments and merging the local index
+			compact();
+			super.addAll(local);
+		}
+	}
+
+	/**
+	 * Every local index is kept as its own segment, so the segments are merged
+	 * by the background merges instead.
+	 *
+	 * @return true, since local indexes are added as segments
+	 */
+	@Override
+	public boolean addsLocalsSeparately() {
+		return true;
+	}
+
+	/**
+	 * Merges all segments into one segment before freezing the extended index.
+	 * Searches still go through the segments, but there is only one left.
+	 */
+	@Override
+	public IndexSnapshot freeze() {
+		List<IndexSnapshot> current = segments;
+		while (current.size() > 1) {
+			IndexSnapshot merged = IndexSnapshot.merge(current);
+			synchronized (segmentLock) {
+				if (replace(current, merged)) {
+					break;
+				}
+				// segments changed while merging, so try again
+				current = segments;
+			}
+		}
+		return super.freeze();
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries) {
+		if (getScoring() != Scoring.MATCHES) {
+			return whole().exactSearch(stemmedQueries, 0, getScoring());
+		}
+		List<IndexSnapshot> current = currentSegments();
+		ArrayList<SearchResult> results = new ArrayList<>();
+		for (IndexSnapshot segment : current) {
+			results.addAll(segment.exactSearch(stemmedQueries));
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries) {
+		if (getScoring() != Scoring.MATCHES) {
+			return whole().partialSearch(stemmedQueries, 0, getScoring());
+		}
+		List<IndexSnapshot> current = currentSegments();
+		ArrayList<SearchResult> results = new ArrayList<>();
+		for (IndexSnapshot segment : current) {
+			results.addAll(segment.partialSearch(stemmedQueries));
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return whole().exactSearch(stemmedQueries, limit, getScoring());
+		}
+		TopResults top = new TopResults(limit);
+		for (IndexSnapshot segment : currentSegments()) {
+			for (SearchResult result : segment.exactSearch(stemmedQueries, limit)) {
+				top.add(result);
+			}
+		}
+		return top.toList();
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return whole().partialSearch(stemmedQueries, limit, getScoring());
+		}
+		TopResults top = new TopResults(limit);
+		for (IndexSnapshot segment : currentSegments()) {
+			for (SearchResult result : segment.partialSearch(stemmedQueries, limit)) {
+				top.add(result);
+			}
+		}
+		return top.toList();
+	}
+
+	@Override
+	public List<SearchResult> proximitySearch(Collection<String> stemmedQueries, int window, boolean isExact, int limit) {
+		TopResults top = new TopResults(limit > 0 ? limit : Integer.MAX_VALUE);
+		for (IndexSnapshot segment : currentSegments()) {
+			for (SearchResult result : segment.proximitySearch(stemmedQueries, window, isExact, limit)) {
+				top.add(result);
+			}
+		}
+		return top.toList();
+	}
+
+	@Override
+	public List<SearchResult> booleanSearch(Collection<String> required, Collection<String> excluded, int limit) {
+		TopResults top = new TopResults(limit > 0 ? limit : Integer.MAX_VALUE);
+		for (IndexSnapshot segment : currentSegments()) {
+			for (SearchResult result : segment.booleanSearch(required, excluded, limit)) {
+				top.add(result);
+			}
+		}
+		return top.toList();
+	}
+
+	@Override
+	public List<SearchResult> phraseSearch(List<String> phrase, int limit) {
+		TopResults top = new TopResults(limit > 0 ? limit : Integer.MAX_VALUE);
+		for (IndexSnapshot segment : currentSegments()) {
+			for (SearchResult result : segment.phraseSearch(phrase, limit)) {
+				top.add(result);
+			}
+		}
+		return top.toList();
+	}
+
+	/**
+	 * Gets the searched snapshots merged into one, merged again if they changed
+	 * since the last time. Segments never share a file path with each other or
+	 * with the extended index.
+	 *
+	 * @return snapshot of the whole index
+	 */
+	private IndexSnapshot whole() {
+		List<IndexSnapshot> current = currentSegments();
+		synchronized (this) {
+			if (whole != null && current.equals(wholeParts)) {
+				return whole;
+			}
+		}
+		// merged without holding any lock, like the background merges
+		IndexSnapshot merged = current.size() == 1 ? current.get(0) : IndexSnapshot.merge(current);
+		synchronized (this) {
+			whole = merged;
+			wholeParts = current;
+		}
+		return merged;
+	}
+
+	/**
+	 * Gets the snapshot of the extended index followed by the current segments.
+	 * The extended index is frozen outside the segment lock, and frozen again
+	 * if segments were copied into it meanwhile, so that a segment being copied
+	 * into the index is never searched twice or missed. Segments are never
+	 * merged here.
+	 *
+	 * @return the snapshots to search
+	 */
+	private List<IndexSnapshot> currentSegments() {
+		while (true) {
+			long copied;
+			synchronized (segmentLock) {
+				copied = compactions;
+			}
+			IndexSnapshot frozen = super.freeze();
+			synchronized (segmentLock) {
+				if (compactions == copied) {
+					ArrayList<IndexSnapshot> current = new ArrayList<>(segments.size() + 1);
+					// an empty extended index is left out, so a single segment is not merged again
+					if (frozen.documentsSize() > 0 || segments.isEmpty()) {
+						current.add(frozen);
+					}
+					current.addAll(segments);
+					return current;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies every segment into the extended index, so the rest of the
+	 * inverted index methods see all of the words.
+	 */
+	private void compact() {
+		synchronized (segmentLock) {
+			if (segments.isEmpty()) {
+				return;
+			}
+			for (IndexSnapshot segment : segments) {
+				super.addAll(segment);
+			}
+			compactions++;
+			segments = Collections.emptyList();
+			locations.clear();
+		}
+	}
+
+	/**
+	 * Starts background merges of segments with a similar number of postings.
+	 * Must be called while holding the segment lock.
+	 */
+	private void scheduleMerges() {
+		// segments are grouped in tiers that grow by the merge factor
+		ArrayList<ArrayList<IndexSnapshot>> tiers = new ArrayList<>();
+		for (IndexSnapshot segment : segments) {
+			if (merging.contains(segment)) {
+				continue;
+			}
+			int tier = 0;
+			for (long size = segment.postingsSize(); size >= MERGE_FACTOR; size /= MERGE_FACTOR) {
+				tier++;
+			}
+			while (tiers.size() <= tier) {
+				tiers.add(new ArrayList<>());
+			}
+			ArrayList<IndexSnapshot> candidates = tiers.get(tier);
+			candidates.add(segment);
+			if (candidates.size() == MERGE_FACTOR) {
+				List<IndexSnapshot> parts = List.copyOf(candidates);
+				merging.addAll(parts);
+				candidates.clear();
+				queue.execute(new MergeTask(parts));
+			}
+		}
+	}
+
+	/**
+	 * Replaces segments with the segment they were merged into, unless any of
+	 * them is gone already. Must be called while holding the segment lock.
+	 *
+	 * @param parts the segments that were merged
+	 * @param merged the merged segment
+	 * @return true if the segments were replaced
+	 */
+	private boolean replace(List<IndexSnapshot> parts, IndexSnapshot merged) {
+		Set<IndexSnapshot> current = Collections.newSetFromMap(new IdentityHashMap<>());
+		current.addAll(segments);
+		if (!current.containsAll(parts)) {
+			return false;
+		}
+		ArrayList<IndexSnapshot> replaced = new ArrayList<>();
+		for (IndexSnapshot segment : segments) {
+			if (!parts.contains(segment)) {
+				replaced.add(segment);
+			}
+		}
+		replaced.add(merged);
+		segments = Collections.unmodifiableList(replaced);
+		return true;
+	}
+
+	/**
+	 * Merges segments in the background.
+	 */
+	private class MergeTask implements Runnable {
+		/** Segments to merge */
+		private final List<IndexSnapshot> parts;
+
+		/**
+		 * Constructor of MergeTask Class.
+		 *
+		 * @param parts segments to merge
+		 */
+		public MergeTask(List<IndexSnapshot> parts) {
+			this.parts = parts;
+		}
+
+		@Override
+		public void run() {
+			IndexSnapshot merged = IndexSnapshot.merge(parts);
+			synchronized (segmentLock) {
+				merging.removeAll(parts);
+				if (replace(parts, merged)) {
+					scheduleMerges();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Every other method works on the extended index, after copying the
+	 * segments into it. Changes keep the segment lock from copying the
+	 * segments until they are done, so no segment is added in between.
+	 */
+
+	@Override
+	public int addDocument(String path) {
+		synchronized (segmentLock) {
+			compact();
+			return super.addDocument(path);
+		}
+	}
+
+	@Override
+	public void add(String word, int document, int position) {
+		synchronized (segmentLock) {
+			compact();
+			super.add(word, document, position);
+		}
+	}
+
+	@Override
+	public void add(String word, String path, int position) {
+		synchronized (segmentLock) {
+			compact();
+			super.add(word, path, position);
+		}
+	}
+
+	@Override
+	public void addAll(IndexSnapshot snapshot) {
+		synchronized (segmentLock) {
+			compact();
+			super.addAll(snapshot);
+		}
+	}
+
+	@Override
+	public void removeAll(Collection<String> locations) {
+		synchronized (segmentLock) {
+			compact();
+			super.removeAll(locations);
+		}
+	}
+
+	@Override
+	public void load(Path path) throws IOException {
+		synchronized (segmentLock) {
+			compact();
+			super.load(path);
+		}
+	}
+
+	@Override
+	public void write(Path path) throws IOException {
+		compact();
+		super.write(path);
+	}
+
+	/**
+	 * Adding a segment does not change the extended index, so the segments
+	 * added are counted as well.
+	 */
+	@Override
+	public long getGeneration() {
+		return super.getGeneration() + segmentsAdded.get();
+	}
+
+	@Override
+	public void output(Path path) throws IOException {
+		compact();
+		super.output(path);
+	}
+
+	@Override
+	public void wordCountOutput(Path path) throws IOException {
+		compact();
+		super.wordCountOutput(path);
+	}
+
+	@Override
+	public boolean containsDocument(String location) {
+		compact();
+		return super.containsDocument(location);
+	}
+
+	@Override
+	public boolean containsWords(String word) {
+		compact();
+		return super.containsWords(word);
+	}
+
+	@Override
+	public boolean containsLocations(String word, String location) {
+		compact();
+		return super.containsLocations(word, location);
+	}
+
+	@Override
+	public boolean containsPositions(String word, String location, int position) {
+		compact();
+		return super.containsPositions(word, location, position);
+	}
+
+	@Override
+	public int wordsSize() {
+		compact();
+		return super.wordsSize();
+	}
+
+	@Override
+	public int locationsSize(String word) {
+		compact();
+		return super.locationsSize(word);
+	}
+
+	@Override
+	public int positionsSize(String word, String location) {
+		compact();
+		return super.positionsSize(word, location);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		compact();
+		return super.getWords();
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		compact();
+		return super.getLocations(word);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		compact();
+		return super.getPositions(word, location);
+	}
+
+	@Override
+	public String toString() {
+		compact();
+		return super.toString();
+	}
+}
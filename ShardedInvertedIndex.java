@@ -0,0 +1,427 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Thread-safe inverted index split by word into several independent shards,
+ * each a thread-safe inverted index with its own lock. Every word belongs to
+ * the shard chosen by its hash, so adds of words in different shards do not
+ * wait for each other. Searches run on every shard at the same time on the
+ * work queue, and the matches of each file path are added up.
+ *
+ * Every shard numbers the file paths the same way as the whole index, so a
+ * word is added to its shard by file-path id. Word counts are kept for the
+ * whole index, since a shard only sees some of the words of a file path, and
+ * are raised without a lock. Scoring models other than the default also need
+ * statistics of the whole index, so they search the snapshot of all shards.
+ *
+ * @author Rhea Arora
+ */
+public class ShardedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Shards, each storing the words with the same hash */
+	private final ThreadSafeInvertedIndex[] shards;
+
+	/** File-path ids of the whole index, only used while synchronized on it */
+	private final DocumentTable documents;
+
+	/** Word counts of the whole index */
+	private final WordCounts counts;
+
+	/** Work queue used to run shard work at the same time */
+	private final WorkQueue queue;
+
+	/** Number of modifications so far, used to tell if the snapshot is outdated */
+	private final AtomicLong modifications;
+
+	/** Snapshot of all shards, or null if not made yet, only used while synchronized on this index */
+	private IndexSnapshot combined;
+
+	/** Number of modifications included in the snapshot of all shards */
+	private long combinedVersion;
+
+	/**
+	 * Constructor initializing the shards.
+	 *
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 * @param shards number of shards
+	 * @param queue work queue used to run shard work at the same time
+	 */
+	public ShardedInvertedIndex(boolean keepPositions, int shards, WorkQueue queue) {
+		super(keepPositions);
+		this.shards = new ThreadSafeInvertedIndex[Math.max(1, shards)];
+		for (int i = 0; i < this.shards.length; i++) {
+			this.shards[i] = new ThreadSafeInvertedIndex(keepPositions);
+		}
+		this.documents = documentTable();
+		this.counts = new WordCounts();
+		this.queue = queue;
+		this.modifications = new AtomicLong();
+		this.combined = null;
+		this.combinedVersion = -1;
+	}
+
+	/**
+	 * Gets the number of the shard a word belongs to.
+	 *
+	 * @param word the word
+	 * @return shard number
+	 */
+	private int shardOf(String word) {
+		return Math.floorMod(word.hashCode(), shards.length);
+	}
+
+	/**
+	 * Runs a task for every shard on the work queue and waits for them.
+	 *
+	 * @param task the task to run, given the shard number
+	 */
+	private void forEachShard(IntConsumer task) {
+		ArrayList<Runnable> tasks = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			int shard = i;
+			tasks.add(() -> task.accept(shard));
+		}
+		queue.invokeAll(tasks);
+	}
+
+	/**
+	 * Gives the file path the next id of the whole index, and the same id in
+	 * every shard.
+	 */
+	@Override
+	public int addDocument(String path) {
+		synchronized (documents) {
+			return register(path);
+		}
+	}
+
+	/**
+	 * Helper method, adds a file path to the whole index and to every shard
+	 * while synchronized on the document table, so the ids stay the same.
+	 *
+	 * @param path the file path
+	 * @return id of the file path
+	 */
+	private int register(String path) {
+		int size = documents.size();
+		int document = documents.add(path);
+		if (document == size) {
+			for (ThreadSafeInvertedIndex shard : shards) {
+				shard.addDocument(path);
+			}
+			counts.ensure(document);
+		}
+		return document;
+	}
+
+	@Override
+	public void add(String word, String path, int position) {
+		add(word, addDocument(path), position);
+	}
+
+	@Override
+	public void add(String word, int document, int position) {
+		shards[shardOf(word)].add(word, document, position);
+		counts.raise(document, position);
+		modifications.incrementAndGet();
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+		addAll(local.freeze());
+	}
+
+	/**
+	 * Splits the snapshot by shard, and adds every part to its shard at the
+	 * same time.
+	 */
+	@Override
+	public void addAll(IndexSnapshot snapshot) {
+		synchronized (documents) {
+			for (int document = 0; document < snapshot.documentsSize(); document++) {
+				counts.raise(register(snapshot.getLocation(document)), snapshot.getCount(document));
+			}
+		}
+		forEachShard(shard -> shards[shard].addAll(part(snapshot, shard)));
+		modifications.incrementAndGet();
+	}
+
+	/**
+	 * Copies the words of one shard out of a snapshot.
+	 *
+	 * @param snapshot the snapshot to copy from
+	 * @param shard the shard number
+	 * @return snapshot with only the words of the shard, and every file path of the snapshot
+	 */
+	private IndexSnapshot part(IndexSnapshot snapshot, int shard) {
+		boolean keepPositions = hasPositions() && snapshot.hasPositions();
+		int[] ids = new int[snapshot.documentsSize()];
+		DocumentTable table = new DocumentTable();
+		for (int document = 0; document < ids.length; document++) {
+			ids[document] = table.add(snapshot.getLocation(document));
+			table.setCount(ids[document], snapshot.getCount(document));
+		}
+		TreeMap<String, PostingList> words = new TreeMap<>();
+		for (int word = 0; word < snapshot.wordsSize(); word++) {
+			String key = snapshot.getWord(word);
+			if (shardOf(key) == shard) {
+				PostingList postings = new PostingList(keepPositions);
+				snapshot.copyPostings(word, postings, ids);
+				words.put(key, postings);
+			}
+		}
+		return new IndexSnapshot(words, table, keepPositions);
+	}
+
+	@Override
+	public void removeAll(Collection<String> locations) {
+		synchronized (documents) {
+			for (String location : locations) {
+				int document = documents.getId(location);
+				if (document >= 0) {
+					counts.set(document, 0);
+				}
+			}
+		}
+		forEachShard(shard -> shards[shard].removeAll(locations));
+		modifications.incrementAndGet();
+	}
+
+	/**
+	 * Loads a binary index file by splitting it into the shards.
+	 */
+	@Override
+	public void load(Path path) throws IOException {
+		IndexSnapshot opened = IndexSnapshot.open(path);
+		if (hasPositions() && !opened.hasPositions()) {
+			throw new IOException("Index file does not store positions: " + path);
+		}
+		addAll(opened);
+	}
+
+	/**
+	 * Freezes every shard for searching, and combines them into one snapshot.
+	 */
+	@Override
+	public IndexSnapshot freeze() {
+		forEachShard(shard -> shards[shard].freeze());
+		return snapshot();
+	}
+
+	/**
+	 * Gets a snapshot of all shards, made again if the index changed since the
+	 * last one. It is combined from the snapshot of every shard and shares
+	 * their positions, so only the word and posting arrays are made again.
+	 */
+	@Override
+	protected synchronized IndexSnapshot snapshot() {
+		long version = modifications.get();
+		if (combined == null || combinedVersion != version) {
+			ArrayList<IndexSnapshot> parts = new ArrayList<>(shards.length);
+			for (ThreadSafeInvertedIndex shard : shards) {
+				parts.add(shard.freeze());
+			}
+			// word counts of the whole index, which may be more than any shard has seen
+			DocumentTable table = new DocumentTable();
+			synchronized (documents) {
+				for (int document = 0; document < documents.size(); document++) {
+					table.add(documents.getLocation(document));
+					table.setCount(document, counts.get(document));
+				}
+			}
+			combined = IndexSnapshot.union(parts, table);
+			combinedVersion = version;
+		}
+		return combined;
+	}
+
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries) {
+		return exactSearch(stemmedQueries, 0);
+	}
+
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries) {
+		return partialSearch(stemmedQueries, 0);
+	}
+
+	/**
+	 * Every shard is searched for all of its results, since the matches of a
+	 * file path are only known once the results of every shard are added up.
+	 */
+	@Override
+	public List<SearchResult> exactSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.exactSearch(stemmedQueries, limit);
+		}
+		ArrayList<ArrayList<String>> queries = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			queries.add(new ArrayList<>());
+		}
+		for (String query : stemmedQueries) {
+			queries.get(shardOf(query)).add(query);
+		}
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(shards.length, null));
+		ArrayList<Runnable> tasks = new ArrayList<>();
+		for (int i = 0; i < shards.length; i++) {
+			int shard = i;
+			if (!queries.get(shard).isEmpty()) {
+				tasks.add(() -> results.set(shard, shards[shard].exactSearch(queries.get(shard))));
+			}
+		}
+		queue.invokeAll(tasks);
+		return combine(results, limit);
+	}
+
+	/**
+	 * Every shard is searched for all of its results, since the matches of a
+	 * file path are only known once the results of every shard are added up.
+	 */
+	@Override
+	public List<SearchResult> partialSearch(Collection<String> stemmedQueries, int limit) {
+		if (getScoring() != Scoring.MATCHES) {
+			return super.partialSearch(stemmedQueries, limit);
+		}
+		// words starting with a query can be in any shard
+		ArrayList<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(shards.length, null));
+		forEachShard(shard -> results.set(shard, shards[shard].partialSearch(stemmedQueries)));
+		return combine(results, limit);
+	}
+
+	/**
+	 * Adds up the matches of each file path over the search results of every
+	 * shard, using the word counts of the whole index.
+	 *
+	 * @param results search results of each shard, or null for shards that were not searched
+	 * @param limit maximum number of results, or 0 for all of them
+	 * @return sorted list of search results
+	 */
+	private List<SearchResult> combine(List<List<SearchResult>> results, int limit) {
+		ArrayList<SearchResult> resultList = new ArrayList<>();
+		HashMap<String, SearchResult> lookup = new HashMap<>();
+		synchronized (documents) {
+			for (List<SearchResult> shardResults : results) {
+				if (shardResults == null) {
+					continue;
+				}
+				for (SearchResult result : shardResults) {
+					SearchResult combined = lookup.get(result.getLocation());
+					if (combined == null) {
+						int count = counts.get(documents.getId(result.getLocation()));
+						combined = new SearchResult(result.getLocation(), count);
+						lookup.put(result.getLocation(), combined);
+						resultList.add(combined);
+					}
+					combined.update(result.getMatches());
+				}
+			}
+		}
+		if (limit > 0) {
+			TopResults top = new TopResults(limit);
+			for (SearchResult result : resultList) {
+				top.add(result);
+			}
+			return top.toList();
+		}
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	@Override
+	public long getGeneration() {
+		return modifications.get();
+	}
+
+	@Override
+	public void output(Path path) throws IOException {
+		snapshot().output(path);
+	}
+
+	@Override
+	public void wordCountOutput(Path path) throws IOException {
+		TreeMap<String, Integer> wordCounts = new TreeMap<>();
+		synchronized (documents) {
+			for (int document = 0; document < documents.size(); document++) {
+				if (counts.get(document) > 0) {
+					wordCounts.put(documents.getLocation(document), counts.get(document));
+				}
+			}
+		}
+		SimpleJsonWriter.asObject(wordCounts, path);
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	@Override
+	public boolean containsDocument(String location) {
+		synchronized (documents) {
+			return documents.getId(location) >= 0;
+		}
+	}
+
+	@Override
+	public boolean containsWords(String word) {
+		return shards[shardOf(word)].containsWords(word);
+	}
+
+	@Override
+	public boolean containsLocations(String word, String location) {
+		return shards[shardOf(word)].containsLocations(word, location);
+	}
+
+	@Override
+	public boolean containsPositions(String word, String location, int position) {
+		return shards[shardOf(word)].containsPositions(word, location, position);
+	}
+
+	@Override
+	public int wordsSize() {
+		int size = 0;
+		for (ThreadSafeInvertedIndex shard : shards) {
+			size += shard.wordsSize();
+		}
+		return size;
+	}
+
+	@Override
+	public int locationsSize(String word) {
+		return shards[shardOf(word)].locationsSize(word);
+	}
+
+	@Override
+	public int positionsSize(String word, String location) {
+		return shards[shardOf(word)].positionsSize(word, location);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+		for (ThreadSafeInvertedIndex shard : shards) {
+			words.addAll(shard.getWords());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		return shards[shardOf(word)].getLocations(word);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		return shards[shardOf(word)].getPositions(word, location);
+	}
+}
@@ -242,7 +242,8 @@ public class SimpleJsonWriter {
 	 */
 	public static void queryArrayOutput(Map<String, ? extends Collection<InvertedIndex.SearchResult>> queries, String query, Writer writer, int level) throws IOException {
 		
-		indent(query, writer, level+1);
+		// phrase queries are written in double quotes
+		indent(query.replace("\"", "\\\""), writer, level+1);
 		writer.write(": [");
 		
 		Iterator<InvertedIndex.SearchResult> search_iterator = queries.get(query).iterator();
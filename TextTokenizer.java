@@ -0,0 +1,225 @@
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Splits text into the same clean words as {@link TextParser#parse(String)},
+ * without the intermediate strings and arrays of normalizing, replacing,
+ * lowercasing, stripping, and splitting the whole text with regular
+ * expressions. Text that is all ASCII is copied into a reusable buffer and
+ * scanned once: letters are lowercased in place, whitespace ends a word, and
+ * every other character is dropped. Any other text is parsed by
+ * {@link TextParser}, since Unicode normalization and lowercasing depend on
+ * the characters around each one.
+ *
+ * Characters are classified one at a time with a lookup table instead of
+ * comparisons. Only the check for non-ASCII characters works on the whole
+ * text at once, combining every character without a branch; the scan itself
+ * is scalar code.
+ *
+ * UTF-8 bytes that are all ASCII can also be scanned straight from a byte
+ * buffer, such as a mapped file, without decoding them to a string first.
+ *
+ * Every thread gets its own tokenizer from {@link #get()}, since the buffer
+ * can only be used by one thread at a time. The buffer is only kept up to a
+ * limited size, so one very long line does not stay allocated for the rest of
+ * the thread.
+ *
+ * @see TextParser
+ * @author Rhea Arora
+ */
+public class TextTokenizer {
+
+	/** Class of an ASCII character that is removed */
+	private static final byte OTHER = 0;
+
+	/** Class of an ASCII letter */
+	private static final byte LETTER = 1;
+
+	/** Class of an ASCII whitespace character */
+	private static final byte SPACE = 2;
+
+	/** Class of each ASCII character */
+	private static final byte[] CLASSES = new byte[128];
+
+	static {
+		// every character not set here stays OTHER
+		for (char c = 'a'; c <= 'z'; c++) {
+			CLASSES[c] = LETTER;
+			CLASSES[Character.toUpperCase(c)] = LETTER;
+		}
+		// whitespace is only what both the clean and split regular expressions treat as space
+		for (char c = '\t'; c <= '\r'; c++) {
+			CLASSES[c] = SPACE;
+		}
+		CLASSES[' '] = SPACE;
+	}
+
+	/** Initial number of characters of the buffer */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Largest buffer kept for the next text, longer texts get a buffer of their own */
+	private static final int MAX_CAPACITY = 1 << 16;
+
+	/** Tokenizer of each thread */
+	private static final ThreadLocal<TextTokenizer> TOKENIZERS = ThreadLocal.withInitial(TextTokenizer::new);
+
+	/** Characters of the current text, with the letters of the current word moved to the front */
+	private char[] buffer;
+
+	/** Initializes a tokenizer with an empty buffer. Only one thread may use it at a time. */
+	public TextTokenizer() {
+		this.buffer = new char[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Gets the tokenizer of the current thread.
+	 *
+	 * @return tokenizer of the current thread
+	 */
+	public static TextTokenizer get() {
+		return TOKENIZERS.get();
+	}
+
+	/**
+	 * Splits the text into clean words, in the same order as
+	 * {@link TextParser#parse(String)}.
+	 *
+	 * @param text the text to clean and split
+	 * @param words receives each word
+	 */
+	public void tokenize(String text, Consumer<String> words) {
+		int length = text.length();
+		char[] chars = buffer(length);
+		text.getChars(0, length, chars, 0);
+		if (!isSimple(chars, length)) {
+			for (String word : TextParser.parse(text)) {
+				words.accept(word);
+			}
+			return;
+		}
+		// letters are written back over the characters already read
+		int start = 0;
+		int end = 0;
+		for (int i = 0; i < length; i++) {
+			char c = chars[i];
+			byte type = CLASSES[c];
+			if (type == LETTER) {
+				// lowercase and uppercase ASCII letters only differ by this bit
+				chars[end++] = (char) (c | 0x20);
+			}
+			else if (type == SPACE) {
+				if (end > start) {
+					words.accept(new String(chars, start, end - start));
+				}
+				start = end;
+			}
+		}
+		if (end > start) {
+			words.accept(new String(chars, start, end - start));
+		}
+	}
+
+	/**
+	 * Splits ASCII bytes into clean words, in the same order as
+	 * {@link TextParser#parse(String)} would for the same text. Each word is
+	 * only passed as letters in the buffer of the tokenizer, which are
+	 * overwritten by the next word.
+	 *
+	 * @param bytes bytes of the text
+	 * @param start index of the first byte
+	 * @param end index after the last byte
+	 * @param words receives the letters of each word
+	 * @return false without splitting anything if a byte is not ASCII or the
+	 *         default locale does not lowercase ASCII letters to ASCII letters
+	 */
+	public boolean tokenize(ByteBuffer bytes, int start, int end, WordConsumer words) {
+		int combined = 0;
+		for (int i = start; i < end; i++) {
+			combined |= bytes.get(i);
+		}
+		// bytes that are not ASCII are negative
+		if (combined < 0 || !isSimpleLocale()) {
+			return false;
+		}
+		char[] letters = buffer(end - start);
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			byte b = bytes.get(i);
+			byte type = CLASSES[b];
+			if (type == LETTER) {
+				letters[length++] = (char) (b | 0x20);
+			}
+			else if (type == SPACE && length > 0) {
+				words.accept(letters, length);
+				length = 0;
+			}
+		}
+		if (length > 0) {
+			words.accept(letters, length);
+		}
+		return true;
+	}
+
+	/**
+	 * Helper method, gets a buffer with room for the given number of
+	 * characters. The buffer of the tokenizer grows up to
+	 * {@link #MAX_CAPACITY}, and a larger one is only used for this text.
+	 *
+	 * @param length number of characters needed
+	 * @return buffer with at least that many characters
+	 */
+	private char[] buffer(int length) {
+		if (length <= buffer.length) {
+			return buffer;
+		}
+		char[] grown = new char[Math.max(length, Math.min(buffer.length * 2, MAX_CAPACITY))];
+		if (grown.length <= MAX_CAPACITY) {
+			buffer = grown;
+		}
+		return grown;
+	}
+
+	/**
+	 * Helper method, checks if the text can be scanned one character at a time.
+	 * That needs every character to be ASCII, and a default locale that
+	 * lowercases the ASCII letters to ASCII letters.
+	 *
+	 * @param chars characters of the text
+	 * @param length number of characters
+	 * @return true if the text only has ASCII characters
+	 */
+	private static boolean isSimple(char[] chars, int length) {
+		// combines every character first, instead of stopping at the first non-ASCII one
+		int combined = 0;
+		for (int i = 0; i < length; i++) {
+			combined |= chars[i];
+		}
+		return combined < 0x80 && isSimpleLocale();
+	}
+
+	/**
+	 * Helper method, checks if the default locale lowercases the ASCII letters
+	 * to ASCII letters.
+	 *
+	 * @return true unless the default locale is Turkish or Azerbaijani
+	 */
+	private static boolean isSimpleLocale() {
+		// Turkish and Azerbaijani lowercase I to a dotless i
+		String language = Locale.getDefault().getLanguage();
+		return !language.equals("tr") && !language.equals("az");
+	}
+
+	/**
+	 * Receives words as letters in a buffer that is reused for the next word.
+	 */
+	public interface WordConsumer {
+		/**
+		 * Receives one word.
+		 *
+		 * @param letters buffer starting with the letters of the word
+		 * @param length number of letters of the word
+		 */
+		void accept(char[] letters, int length);
+	}
+}
@@ -1,7 +1,6 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
-import java.util.List;
 import java.util.Set;
 /**
  * Creates thread-safe version of InvertedIndex Class.
@@ -15,10 +14,41 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	/** Constructor initializing lock object */
 	public ThreadSafeInvertedIndex() {
-		super();
+		this(true);
+	}
+	
+	/**
+	 * Constructor initializing lock object, optionally only counting words.
+	 * 
+	 * @param keepPositions false to only store how many times a word appears in a file path
+	 */
+	public ThreadSafeInvertedIndex(boolean keepPositions) {
+		super(keepPositions);
 		lock = new SimpleReadWriteLock();
 	}
 	
+	@Override
+	public int addDocument(String path) {
+		lock.writeLock().lock();
+		try {
+			return super.addDocument(path);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	@Override
+	public void add(String word, int document, int position) {
+		lock.writeLock().lock();
+		try {
+			super.add(word, document, position);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
 	@Override
 	public void add(String word, String path, int position) {
 		lock.writeLock().lock();
@@ -42,25 +72,62 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		
 	}
 	
+	/**
+	 * Whether local indexes should be added one by one instead of being merged
+	 * into one local index first. Adding one merged index takes the write lock
+	 * only once.
+	 *
+	 * @return false, since local indexes are merged first
+	 */
+	public boolean addsLocalsSeparately() {
+		return false;
+	}
+
 	@Override
-	public List<SearchResult> exactSearch(Collection<String> stemmedQueries) {
-		lock.readLock().lock();
+	public void addAll(IndexSnapshot snapshot) {
+		lock.writeLock().lock();
 		try {
-			return super.exactSearch(stemmedQueries);
+			super.addAll(snapshot);
 		}
 		finally {
-			lock.readLock().unlock();
+			lock.writeLock().unlock();
 		}
 	}
 	
 	@Override
-	public List<SearchResult> partialSearch(Collection<String> stemmedQueries) {
-		lock.readLock().lock();
+	public void removeAll(Collection<String> locations) {
+		lock.writeLock().lock();
 		try {
-			return super.partialSearch(stemmedQueries);
+			super.removeAll(locations);
 		}
 		finally {
-			lock.readLock().unlock();
+			lock.writeLock().unlock();
+		}
+	}
+	
+	@Override
+	public void load(Path path) throws IOException {
+		lock.writeLock().lock();
+		try {
+			super.load(path);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Freezes the index while holding the write lock. Searches use the
+	 * snapshot afterwards, so they do not need to lock at all.
+	 */
+	@Override
+	public IndexSnapshot freeze() {
+		lock.writeLock().lock();
+		try {
+			return super.freeze();
+		}
+		finally {
+			lock.writeLock().unlock();
 		}
 	}
 	
@@ -86,6 +153,17 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 	
+	@Override
+	public boolean containsDocument(String location) {
+		lock.readLock().lock();
+		try {
+			return super.containsDocument(location);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+	
 	@Override
 	public boolean containsWords(String word) {
 		lock.readLock().lock();
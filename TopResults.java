@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best search results seen so far, up to a limit. Results are kept
+ * in a bounded heap whose head is the worst result kept, so only the kept
+ * results are ever sorted.
+ *
+ * @author Rhea Arora
+ */
+public class TopResults {
+
+	/** Maximum number of results kept */
+	private final int limit;
+
+	/** Kept results, worst result first */
+	private final PriorityQueue<InvertedIndex.SearchResult> heap;
+
+	/**
+	 * Initializes an empty set of results.
+	 *
+	 * @param limit maximum number of results kept, at least 1
+	 */
+	public TopResults(int limit) {
+		this.limit = limit;
+		this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, Collections.reverseOrder());
+	}
+
+	/**
+	 * Checks if a result with the given score could be kept, before making the
+	 * result. Results with a lower score than every kept result are never kept.
+	 *
+	 * @param score score of the result
+	 * @return false if the result would not be kept
+	 */
+	public boolean accepts(double score) {
+		return heap.size() < limit || score >= heap.peek().getScore();
+	}
+
+	/**
+	 * Gets the lowest score a result needs to be kept. Results with exactly
+	 * this score may still be kept, depending on their matches and location.
+	 *
+	 * @return score of the worst kept result if there are already enough results, otherwise 0
+	 */
+	public double threshold() {
+		return heap.size() < limit ? 0 : heap.peek().getScore();
+	}
+
+	/**
+	 * Adds a result, dropping the worst result if there are too many.
+	 *
+	 * @param result the result to add
+	 */
+	public void add(InvertedIndex.SearchResult result) {
+		if (heap.size() < limit) {
+			heap.add(result);
+		}
+		else if (result.compareTo(heap.peek()) < 0) {
+			heap.poll();
+			heap.add(result);
+		}
+	}
+
+	/**
+	 * Gets the kept results.
+	 *
+	 * @return sorted list of the kept results
+	 */
+	public List<InvertedIndex.SearchResult> toList() {
+		ArrayList<InvertedIndex.SearchResult> results = new ArrayList<>(heap);
+		Collections.sort(results);
+		return results;
+	}
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Word counts of documents by id, which several threads can raise at the same
+ * time without a lock. Counts are kept in blocks that are never copied, so a
+ * count raised while more blocks are added is never lost. Only adding blocks
+ * for new document ids is synchronized.
+ *
+ * @see DocumentTable
+ * @author Rhea Arora
+ */
+public class WordCounts {
+
+	/** Number of document ids in each block, a power of two */
+	private static final int BLOCK_SIZE = 1 << 10;
+
+	/** Blocks of counts, replaced by a longer array whenever a block is added */
+	private volatile AtomicIntegerArray[] blocks;
+
+	/** Initializes counts without any document ids */
+	public WordCounts() {
+		this.blocks = new AtomicIntegerArray[0];
+	}
+
+	/**
+	 * Makes room for the count of a document id. Must be called before the
+	 * count of the id is used, for example when the id is assigned.
+	 *
+	 * @param document id of the document
+	 */
+	public synchronized void ensure(int document) {
+		int needed = document / BLOCK_SIZE + 1;
+		if (needed > blocks.length) {
+			AtomicIntegerArray[] grown = Arrays.copyOf(blocks, needed);
+			for (int block = blocks.length; block < needed; block++) {
+				grown[block] = new AtomicIntegerArray(BLOCK_SIZE);
+			}
+			blocks = grown;
+		}
+	}
+
+	/**
+	 * Raises the count of a document to at least the given count.
+	 *
+	 * @param document id of the document
+	 * @param count the count of words seen so far
+	 */
+	public void raise(int document, int count) {
+		AtomicIntegerArray block = blocks[document / BLOCK_SIZE];
+		int index = document % BLOCK_SIZE;
+		int current = block.get(index);
+		while (current < count && !block.compareAndSet(index, current, count)) {
+			current = block.get(index);
+		}
+	}
+
+	/**
+	 * Sets the count of a document.
+	 *
+	 * @param document id of the document
+	 * @param count count of words
+	 */
+	public void set(int document, int count) {
+		blocks[document / BLOCK_SIZE].set(document % BLOCK_SIZE, count);
+	}
+
+	/**
+	 * Gets the count of a document.
+	 *
+	 * @param document id of the document
+	 * @return count of words
+	 */
+	public int get(int document) {
+		return blocks[document / BLOCK_SIZE].get(document % BLOCK_SIZE);
+	}
+}
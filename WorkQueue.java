@@ -1,4 +1,7 @@
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -123,6 +126,29 @@ public class WorkQueue {
 		assert pending == 0;
 }
 
+	/**
+	 * Runs a group of tasks on the work queue and waits for only these tasks to
+	 * finish. The calling thread runs every task that no worker has started
+	 * yet, so this can also be called from a task running on the work queue
+	 * without waiting for itself.
+	 *
+	 * @param tasks the tasks to run
+	 */
+	public void invokeAll(List<? extends Runnable> tasks) {
+		ArrayList<Claim> claims = new ArrayList<>(tasks.size());
+		for (Runnable task : tasks) {
+			Claim claim = new Claim(task);
+			claims.add(claim);
+			execute(claim);
+		}
+		for (Claim claim : claims) {
+			claim.run();
+		}
+		for (Claim claim : claims) {
+			claim.await();
+		}
+	}
+
 	/**
 	 * Asks the queue to shutdown. Any unprocessed work will not be finished, but
 	 * threads in-progress will not be interrupted.
@@ -145,6 +171,62 @@ public class WorkQueue {
 		return workers.length;
 	}
 	
+	/**
+	 * Task of {@link #invokeAll(List)} that is run by whichever thread gets to
+	 * it first, either a worker or the thread waiting for it.
+	 */
+	private static class Claim implements Runnable {
+		/** The task to run */
+		private final Runnable task;
+
+		/** Whether a thread started running the task */
+		private final AtomicBoolean started;
+
+		/** Whether the task is finished */
+		private boolean done;
+
+		/**
+		 * Constructor of Claim Class.
+		 *
+		 * @param task the task to run
+		 */
+		public Claim(Runnable task) {
+			this.task = task;
+			this.started = new AtomicBoolean(false);
+			this.done = false;
+		}
+
+		@Override
+		public void run() {
+			if (!started.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				task.run();
+			}
+			finally {
+				synchronized (this) {
+					done = true;
+					this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Waits until the task is finished by the thread running it.
+		 */
+		public synchronized void await() {
+			while (!done) {
+				try {
+					this.wait();
+				}
+				catch (InterruptedException e) {
+					log.error("A wait timeout occurred. ");
+				}
+			}
+		}
+	}
+
 	/**
 	 * Waits until work is available in the work queue. When work is found, will
 	 * remove the work from the queue and run it. If a shutdown is detected, will